@@ -0,0 +1,19 @@
+package com.smartg.swing.layout;
+
+import java.awt.Component;
+
+/**
+ * Creates components for cells of {@link LayoutNode.VirtualGridNode}.
+ */
+public interface CellFactory {
+
+	/**
+	 * Return component which shows given cell. Components of cells which are
+	 * scrolled out of view are passed back as recycled. Recycled component
+	 * always comes from same column, so factory may configure it for new cell
+	 * instead of creating new one.
+	 *
+	 * @param recycled component which is not used by any cell or null
+	 */
+	Component getCell(int row, int column, Component recycled);
+}
@@ -0,0 +1,158 @@
+package com.smartg.swing.layout;
+
+import java.awt.Component;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+import com.smartg.swing.layout.LayoutNode.LeafNode;
+
+/**
+ * Maps components to their leaf nodes.
+ * <p>
+ * Components are compared by identity, so overridden equals/hashCode of
+ * component doesn't matter. Index holds only weak references to leaf nodes
+ * (and leaf node is the only holder of its component), so neither leaf nor
+ * component is kept alive by index after leaf was dropped from node tree.
+ * Entries of collected leaves are removed on next access of index.
+ */
+final class ComponentIndex {
+
+	private static final class Entry extends WeakReference<LeafNode> {
+		final int hash;
+		Entry next;
+
+		Entry(LeafNode leaf, int hash, Entry next, ReferenceQueue<LeafNode> queue) {
+			super(leaf, queue);
+			this.hash = hash;
+			this.next = next;
+		}
+	}
+
+	private final ReferenceQueue<LeafNode> queue = new ReferenceQueue<>();
+	private Entry[] table = new Entry[16];
+	private int size;
+
+	private static int hash(Component c) {
+		int h = System.identityHashCode(c);
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * @return leaf node of given component or null
+	 */
+	LeafNode get(Component c) {
+		expungeStaleEntries();
+		int h = hash(c);
+		for (Entry e = table[h & (table.length - 1)]; e != null; e = e.next) {
+			if (e.hash == h) {
+				LeafNode leaf = e.get();
+				if (leaf != null && leaf.getComponent() == c) {
+					return leaf;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Add leaf node to index. Previous leaf node of same component is
+	 * replaced.
+	 */
+	void put(LeafNode leaf) {
+		Component c = leaf.getComponent();
+		remove(c);
+		if (size >= table.length - (table.length >>> 2)) {
+			resize();
+		}
+		int h = hash(c);
+		int i = h & (table.length - 1);
+		table[i] = new Entry(leaf, h, table[i], queue);
+		size++;
+	}
+
+	/**
+	 * Remove leaf node of given component.
+	 *
+	 * @return removed leaf node or null
+	 */
+	LeafNode remove(Component c) {
+		expungeStaleEntries();
+		int h = hash(c);
+		int i = h & (table.length - 1);
+		Entry prev = null;
+		for (Entry e = table[i]; e != null; prev = e, e = e.next) {
+			if (e.hash == h) {
+				LeafNode leaf = e.get();
+				if (leaf != null && leaf.getComponent() == c) {
+					unlink(i, prev, e);
+					return leaf;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Remove given leaf node, if it is registered for its component.
+	 */
+	void remove(LeafNode leaf) {
+		expungeStaleEntries();
+		int h = hash(leaf.getComponent());
+		int i = h & (table.length - 1);
+		Entry prev = null;
+		for (Entry e = table[i]; e != null; prev = e, e = e.next) {
+			if (e.get() == leaf) {
+				unlink(i, prev, e);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return number of entries, including entries of leaf nodes which are
+	 *         collected, but not yet removed
+	 */
+	int size() {
+		return size;
+	}
+
+	private void unlink(int i, Entry prev, Entry e) {
+		if (prev == null) {
+			table[i] = e.next;
+		} else {
+			prev.next = e.next;
+		}
+		e.next = null;
+		size--;
+	}
+
+	private void expungeStaleEntries() {
+		for (Object x; (x = queue.poll()) != null;) {
+			Entry stale = (Entry) x;
+			int i = stale.hash & (table.length - 1);
+			Entry prev = null;
+			for (Entry e = table[i]; e != null; prev = e, e = e.next) {
+				if (e == stale) {
+					unlink(i, prev, e);
+					break;
+				}
+			}
+		}
+	}
+
+	private void resize() {
+		Entry[] old = table;
+		Entry[] t = new Entry[old.length * 2];
+		for (Entry head : old) {
+			Entry e = head;
+			while (e != null) {
+				Entry next = e.next;
+				int i = e.hash & (t.length - 1);
+				e.next = t[i];
+				t[i] = e;
+				e = next;
+			}
+		}
+		table = t;
+	}
+}
@@ -1,6 +1,7 @@
 package com.smartg.swing.layout;
 
 import java.awt.Component;
+import java.awt.Container;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -48,18 +49,44 @@ public class DefaultGridLine implements GridLine {
 	}
 	
 	public void setVisible(boolean b) {
-		for(Object obj: this) {
-			if(obj instanceof Component) {
-				((Component)obj).setVisible(b);
-			}
-			else {
-				LayoutNode node = (LayoutNode) obj;
-				Iterator<Component> components = node.components();
-				while(components.hasNext()) {
-					components.next().setVisible(b);
+		// components of line are shown or hidden in one layout pass
+		JNodeLayout layout = getLayout();
+		if (layout != null) {
+			layout.beginUpdate();
+		}
+		try {
+			for(Object obj: this) {
+				if(obj instanceof Component) {
+					((Component)obj).setVisible(b);
 				}
+				else {
+					LayoutNode node = (LayoutNode) obj;
+					Iterator<Component> components = node.components();
+					while(components.hasNext()) {
+						components.next().setVisible(b);
+					}
+				}
+			}
+		} finally {
+			if (layout != null) {
+				layout.endUpdate();
+			}
+		}
+	}
+
+	private JNodeLayout getLayout() {
+		for (Object obj : this) {
+			Container parent;
+			if (obj instanceof Component) {
+				parent = ((Component) obj).getParent();
+			} else {
+				parent = ((LayoutNode) obj).getTarget();
+			}
+			if (parent != null && parent.getLayout() instanceof JNodeLayout) {
+				return (JNodeLayout) parent.getLayout();
 			}
 		}
+		return null;
 	}
 
 	public void setEnabled(boolean b) {
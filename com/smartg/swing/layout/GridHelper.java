@@ -18,6 +18,7 @@ public class GridHelper {
 	private final Container parent;
 	private final String gridName;
 	private JNodeLayout nodeLayout;
+	private GridNode gridNode;
 
 	private int width;
 
@@ -33,33 +34,27 @@ public class GridHelper {
 	}
 
 	public void setHgap(int gap) {
-		LayoutNode node = nodeLayout.getNode(gridName);
-		node.setHgap(gap);
+		gridNode.setHgap(gap);
 	}
 
 	public void setVgap(int gap) {
-		LayoutNode node = nodeLayout.getNode(gridName);
-		node.setVgap(gap);
+		gridNode.setVgap(gap);
 	}
 
 	public void setMinCellWidth(int w) {
-		GridNode node = (GridNode) nodeLayout.getNode(gridName);
-		node.setMinCellWidth(w);
+		gridNode.setMinCellWidth(w);
 	}
 
 	public void setMinCellHeight(int w) {
-		GridNode node = (GridNode) nodeLayout.getNode(gridName);
-		node.setMinCellHeight(w);
+		gridNode.setMinCellHeight(w);
 	}
 
 	public void setMaxCellWidth(int w) {
-		GridNode node = (GridNode) nodeLayout.getNode(gridName);
-		node.setMaxCellWidth(w);
+		gridNode.setMaxCellWidth(w);
 	}
 
 	public void setMaxCellHeight(int w) {
-		GridNode node = (GridNode) nodeLayout.getNode(gridName);
-		node.setMaxCellHeight(w);
+		gridNode.setMaxCellHeight(w);
 	}
 
 	private void softInit() {
@@ -76,12 +71,11 @@ public class GridHelper {
 			throw new IllegalArgumentException();
 		}
 		nodeLayout = (JNodeLayout) layout;
-		nodeLayout.syncNodes();
 		LayoutNode node = nodeLayout.getNode(gridName);
 		if (!(node instanceof GridNode)) {
 			throw new IllegalArgumentException();
 		}
-		GridNode gridNode = (GridNode) node;
+		gridNode = (GridNode) node;
 		Rectangle gridBounds = gridNode.getGridBounds();
 		y = gridBounds.height + gridBounds.y;
 		if (width == 0) {
@@ -99,7 +93,7 @@ public class GridHelper {
 			y++;
 		}
 		Rectangle r = new Rectangle(x++, y, 1, 1);
-		parent.add(comp, new NodeConstraints(gridName, r));
+		parent.add(comp, new NodeConstraints(gridNode, r));
 	}
 
 	public void add(LayoutNode node) {
@@ -111,7 +105,7 @@ public class GridHelper {
 			y++;
 		}
 		Rectangle r = new Rectangle(x++, y, 1, 1);
-		nodeLayout.addLayoutNode(node, gridName, r);
+		nodeLayout.addLayoutNode(node, gridNode, r);
 	}
 
 	public void add(Component comp, int w) {
@@ -127,7 +121,7 @@ public class GridHelper {
 			y++;
 		}
 		Rectangle r = new Rectangle(x, y, w, 1);
-		parent.add(comp, new NodeConstraints(gridName, r));
+		parent.add(comp, new NodeConstraints(gridNode, r));
 		x += w;
 	}
 
@@ -138,26 +132,36 @@ public class GridHelper {
 		if (x != 0) {
 			skipToNextLine();
 		}
+		// whole line is laid out once
+		nodeLayout.beginUpdate();
+		try {
+			addLine(line);
+		} finally {
+			nodeLayout.endUpdate();
+		}
+		x = 0;
+		y++;
+	}
+
+	private void addLine(GridLine line) {
 		for (Object obj : line) {
 			if (obj instanceof Component) {
 				Component comp = (Component) obj;
 				int w = line.getWidthFor(comp);
 				Rectangle r = new Rectangle(x, y, w, 1);
-				parent.add(comp, new NodeConstraints(gridName, r));
+				parent.add(comp, new NodeConstraints(gridNode, r));
 				x += w;
 			} else if (obj instanceof LayoutNode) {
 				LayoutNode node = (LayoutNode) obj;
 				int w = line.getWidthFor(node);
 				Rectangle r = new Rectangle(x, y, w, 1);
-				nodeLayout.addLayoutNode(node, gridName, r);
+				nodeLayout.addLayoutNode(node, gridNode, r);
 				x += w;
 			} else {
 				Logger.getLogger(getClass().getName()).log(Level.SEVERE,
 						"Unexpected Object Type: " + obj.getClass().getName());
 			}
 		}
-		x = 0;
-		y++;
 	}
 
 	public void add(LayoutNode node, int w) {
@@ -173,16 +177,22 @@ public class GridHelper {
 			y++;
 		}
 		Rectangle r = new Rectangle(x, y, w, 1);
-		nodeLayout.addLayoutNode(node, gridName, r);
+		nodeLayout.addLayoutNode(node, gridNode, r);
 		x += w;
 	}
 
 	public void add(Component comp, Rectangle r) {
-		parent.add(comp, new NodeConstraints(gridName, r));
+		if (!initDone) {
+			init();
+		}
+		parent.add(comp, new NodeConstraints(gridNode, r));
 	}
 
 	public void add(LayoutNode node, Rectangle r) {
-		nodeLayout.addLayoutNode(node, gridName, r);
+		if (!initDone) {
+			init();
+		}
+		nodeLayout.addLayoutNode(node, gridNode, r);
 	}
 
 	public void skip(int w) {
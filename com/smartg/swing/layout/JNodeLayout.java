@@ -38,8 +38,11 @@ import java.awt.LayoutManager2;
 import java.awt.Rectangle;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.util.HashMap;
 import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -48,19 +51,69 @@ import javax.swing.Timer;
 import com.smartg.swing.layout.LayoutNode.LeafNode;
 import java.util.Objects;
 import javax.swing.CellRendererPane;
+import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
 
 /**
  * JNodeLayoutis a node-based LayoutManager.
- *
+ * <p>
+ * Threading: node tree of layout belongs to Event Dispatch Thread, like
+ * Components. Node tree which is not attached to any layout may be built on
+ * any thread and then attached with
+ * {@link #addLayoutNodeLater(LayoutNode, String, Object)}. Registry of node
+ * names is concurrent, so {@link #getNode(String)} may be called from any
+ * thread and never blocks layout pass.
  */
 public class JNodeLayout implements LayoutManager2 {
 
     private static final boolean logStackTrace = false;
 
-    private final HashMap<String, LayoutNode> map = new HashMap<>();
-    private final HashMap<Component, LayoutNode.LeafNode> byComponent = new HashMap<>();
+    private final ConcurrentHashMap<String, LayoutNode> map = new ConcurrentHashMap<>();
+    private final ComponentIndex byComponent = new ComponentIndex();
 
     private final LayoutNode root;
+    private final LayoutContext context = new LayoutContext();
+    private final Rectangle bounds = new Rectangle();
+    private final Insets insets = new Insets(0, 0, 0, 0);
+    private boolean compiled;
+    private LayoutPlan plan;
+    // modCount of tree which can't be compiled
+    private int uncompiledModCount = -1;
+    // asynchronous mode, all fields are accessed only on EDT
+    private Executor executor;
+    private int generation;
+    private boolean running;
+    private boolean pending;
+    // result applied by last computation, until Container is validated
+    private LayoutPlan applied;
+    private final Rectangle appliedBounds = new Rectangle();
+    // update transaction, all fields are accessed only on EDT
+    private int updateLevel;
+    private boolean updatePending;
+    private Container updateTarget;
+    private int updateModCount;
+    // preferred size is taken on first request inside of transaction
+    private Dimension updateSize;
+    private long avoidedLayouts;
+    private long avoidedMeasures;
+    // resize coalescing, all fields are accessed only on EDT
+    private int resizeInterval;
+    private boolean resizeApproximate;
+    private Timer resizeTimer;
+    private Container resizeTarget;
+    // next pass for resized Container must be exact
+    private boolean resizeEnded;
+    private long lastLayoutTime;
+    private int lastModCount = -1;
+    // destination of last exact pass
+    private final Rectangle lastBounds = new Rectangle();
+    // component bounds of last exact pass, taken by first approximate pass
+    private boolean approximated;
+    private Component[] exactComponents;
+    private int[] exactBounds;
+    private long coalescedLayouts;
+    // Container invalidated since last measure
+    private Container staleTarget;
     private Timer debugTimer = new Timer(500, new ActionListener() {
 
         @Override
@@ -93,6 +146,8 @@ public class JNodeLayout implements LayoutManager2 {
     public JNodeLayout(LayoutNode root) {
         this.root = root;
         putNode(root);
+        registerChildren(root);
+        root.setOwner(this);
     }
 
     public void setDebug(boolean b) {
@@ -114,6 +169,8 @@ public class JNodeLayout implements LayoutManager2 {
     public JNodeLayout(Container target, LayoutNode root) {
         map.put("root", root);
         this.root = root;
+        registerChildren(root);
+        root.setOwner(this);
         root.setTarget(target);
     }
 
@@ -124,7 +181,7 @@ public class JNodeLayout implements LayoutManager2 {
      * @param alignment
      */
     public void setHorizontalAlignment(String nodeName, NodeAlignment alignment) {
-        LayoutNode gl = map.get(nodeName);
+        LayoutNode gl = getNode(nodeName);
         if (gl != null) {
             gl.setHorizontalAlignment(alignment);
         } else {
@@ -139,7 +196,7 @@ public class JNodeLayout implements LayoutManager2 {
      * @param alignment
      */
     public void setVerticalAlignment(String nodeName, NodeAlignment alignment) {
-        LayoutNode gl = map.get(nodeName);
+        LayoutNode gl = getNode(nodeName);
         if (gl != null) {
             gl.setVerticalAlignment(alignment);
         } else {
@@ -196,18 +253,50 @@ public class JNodeLayout implements LayoutManager2 {
     }
 
     public void addLayoutNode(LayoutNode layoutNode, String parentNodeName, Object constraints) {
-        putNode(layoutNode);
-        if (parentNodeName != null) {
-            LayoutNode gl = map.get(parentNodeName);
-            gl.add(layoutNode, constraints);
-            Container target = layoutNode.getTarget();
-            if (target != null) {
-                Iterator<Component> components = layoutNode.components();
-                while (components.hasNext()) {
-                    Component c = components.next();
-                    if (c.getParent() != target) {
-                        target.add(c);
-                    }
+        if (parentNodeName == null) {
+            putNode(layoutNode);
+        } else {
+            addLayoutNode(layoutNode, getNode(parentNodeName), constraints);
+        }
+    }
+
+    /**
+     * Same as {@link #addLayoutNode(LayoutNode, String, Object)}, but may be
+     * called from any thread. Given node and its children may be built on
+     * background thread, node is attached later on Event Dispatch Thread in
+     * one step, so whole subtree is registered and laid out at once. Calling
+     * thread must not change node or its children after this call.
+     */
+    public void addLayoutNodeLater(final LayoutNode layoutNode, final String parentNodeName, final Object constraints) {
+        if (layoutNode.getParent() != null) {
+            throw new IllegalArgumentException("Node is already attached: " + layoutNode);
+        }
+        if (SwingUtilities.isEventDispatchThread()) {
+            addLayoutNode(layoutNode, parentNodeName, constraints);
+        } else {
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    addLayoutNode(layoutNode, parentNodeName, constraints);
+                }
+            });
+        }
+    }
+
+    /**
+     * Same as {@link #addLayoutNode(LayoutNode, String, Object)}, but without
+     * lookup of parent node by name.
+     */
+    void addLayoutNode(LayoutNode layoutNode, LayoutNode parentNode, Object constraints) {
+        // node and its children are registered by nodeAttached
+        parentNode.add(layoutNode, constraints);
+        Container target = layoutNode.getTarget();
+        if (target != null) {
+            Iterator<Component> components = layoutNode.components();
+            while (components.hasNext()) {
+                Component c = components.next();
+                if (c.getParent() != target) {
+                    target.add(c);
                 }
             }
         }
@@ -221,22 +310,179 @@ public class JNodeLayout implements LayoutManager2 {
         Logger.getLogger(getClass().getName()).log(Level.WARNING, "Method not implementd");
     }
 
+    /**
+     * Called by Container for each removed component. Leaf node of component
+     * is removed from node tree immediately, so layout passes never have to
+     * check if component still belongs to Container.
+     */
     @Override
     public void removeLayoutComponent(Component comp) {
         LeafNode leaf = byComponent.remove(comp);
         if (leaf != null) {
-            leaf.getParent().remove(leaf);
+            LayoutNode parent = leaf.getParent();
+            if (parent != null) {
+                parent.remove(leaf);
+            }
         }
     }
 
+    /**
+     * @return node with given name or null. May be called from any thread.
+     */
     public LayoutNode getNode(String name) {
+        if (name == null) {
+            return null;
+        }
         return map.get(name);
     }
 
+    /**
+     * Start update transaction. Until matching {@link #endUpdate()}, layout
+     * passes are skipped, so components and nodes may be added, removed or
+     * changed one by one without intermediate layouts. Preferred size of
+     * layout is measured once, on first request inside of transaction, and
+     * then stays the same until commit. Transactions may be nested, only
+     * outermost one is committed.
+     */
+    public void beginUpdate() {
+        if (updateLevel++ == 0) {
+            updateModCount = root.getModCount();
+        }
+    }
+
+    /**
+     * Commit update transaction: target Container is revalidated, so it is
+     * laid out once. Changed nodes are already marked by their dirty flags.
+     *
+     * @throws IllegalStateException if there was no matching
+     * {@link #beginUpdate()}
+     */
+    public void endUpdate() {
+        if (updateLevel == 0) {
+            throw new IllegalStateException("endUpdate without beginUpdate");
+        }
+        if (--updateLevel > 0) {
+            return;
+        }
+        boolean changed = updatePending || updateModCount != root.getModCount();
+        Container target = root.getTarget() != null ? root.getTarget() : updateTarget;
+        updatePending = false;
+        updateTarget = null;
+        updateSize = null;
+        if (changed) {
+            revalidate(target);
+        }
+    }
+
+    /**
+     * @return true while update transaction is open
+     */
+    public boolean isUpdating() {
+        return updateLevel > 0;
+    }
+
+    /**
+     * @return number of layout passes skipped by update transactions
+     */
+    public long getAvoidedLayoutCount() {
+        return avoidedLayouts;
+    }
+
+    /**
+     * @return number of preferred size requests answered by update
+     * transactions without measure pass
+     */
+    public long getAvoidedMeasureCount() {
+        return avoidedMeasures;
+    }
+
+    /**
+     * @return number of layout passes dropped or approximated by resize
+     * coalescing
+     */
+    public long getCoalescedLayoutCount() {
+        return coalescedLayouts;
+    }
+
+    public void resetAvoidedCounts() {
+        avoidedLayouts = 0;
+        avoidedMeasures = 0;
+        coalescedLayouts = 0;
+    }
+
+    /**
+     * Coalesce layout passes while Container is resized, e.g. while user
+     * drags edge of window. Layout request, which only changes size of
+     * Container (node tree was not changed since last pass), is done only if
+     * given interval elapsed since end of last pass, other requests are
+     * dropped. When no resize was requested for one interval, Container is
+     * revalidated and laid out exactly for final size (or by
+     * {@link #endUpdate()}, if update transaction is open).
+     * <p>
+     * If approximate is true, no exact layout is done during resize. Instead
+     * bounds of components, as they was after last exact pass, are scaled
+     * proportionally to new size, which is much cheaper for large trees.
+     *
+     * @param interval minimum time between layout passes in milliseconds (for
+     * example 16 for 60 frames per second) or 0 to lay out each size
+     * @param approximate scale last layout while resize is in progress
+     */
+    public void setResizeCoalescing(int interval, boolean approximate) {
+        if (interval < 0) {
+            throw new IllegalArgumentException("interval must not be negative");
+        }
+        this.resizeInterval = interval;
+        this.resizeApproximate = approximate;
+        if (interval == 0) {
+            if (resizeTimer != null) {
+                resizeTimer.stop();
+                resizeTimer = null;
+            }
+            return;
+        }
+        if (resizeTimer == null) {
+            resizeTimer = new Timer(interval, new ActionListener() {
+
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    // resize is over
+                    Container parent = resizeTarget;
+                    resizeTarget = null;
+                    if (parent == null) {
+                        return;
+                    }
+                    resizeEnded = true;
+                    if (updateLevel > 0) {
+                        // laid out by endUpdate
+                        updatePending = true;
+                        updateTarget = parent;
+                    } else {
+                        revalidate(parent);
+                    }
+                }
+            });
+            resizeTimer.setRepeats(false);
+        } else {
+            resizeTimer.setInitialDelay(interval);
+        }
+    }
+
+    /**
+     * @return minimum time between layout passes during resize in
+     * milliseconds, 0 if resize coalescing is off
+     */
+    public int getResizeInterval() {
+        return resizeInterval;
+    }
+
+    public boolean isResizeApproximate() {
+        return resizeApproximate;
+    }
+
     @Override
     public Dimension preferredLayoutSize(Container parent) {
         Insets insets = parent.getInsets();
-        Dimension preferredSize = root.preferredSize();
+        Dimension preferredSize = rootSize();
         preferredSize.width += insets.left + insets.right;
         preferredSize.height += insets.top + insets.bottom;
         preferredSize.width += root.getHgap();
@@ -268,8 +514,22 @@ public class JNodeLayout implements LayoutManager2 {
 
     @Override
     public void layoutContainer(Container parent) {
-        Rectangle bounds = parent.getBounds();
-        Insets insets = parent.getInsets();
+        if (updateLevel > 0) {
+            avoidedLayouts++;
+            updatePending = true;
+            updateTarget = parent;
+            return;
+        }
+        Rectangle bounds = getLayoutBounds(parent);
+        if (resizeInterval > 0 && coalesceResize(parent, bounds)) {
+            return;
+        }
+        layoutExact(parent, bounds);
+    }
+
+    private Rectangle getLayoutBounds(Container parent) {
+        Rectangle bounds = parent.getBounds(this.bounds);
+        Insets insets = getInsets(parent);
 
         bounds.width -= insets.left + insets.right;
         bounds.x = insets.left;
@@ -282,8 +542,289 @@ public class JNodeLayout implements LayoutManager2 {
 
         bounds.width -= hgap;
         bounds.height -= vgap;
+        return bounds;
+    }
+
+    /**
+     * Drop or approximate layout request, which only changes size of
+     * Container, and schedule exact layout for end of resize.
+     *
+     * @return false if exact layout must be done now
+     */
+    private boolean coalesceResize(Container parent, Rectangle bounds) {
+        if (resizeEnded || lastModCount != root.getModCount() || bounds.equals(lastBounds) || lastBounds.isEmpty()) {
+            return false;
+        }
+        resizeTarget = parent;
+        resizeTimer.restart();
+        long elapsed = (System.nanoTime() - lastLayoutTime) / 1000000;
+        if (elapsed >= resizeInterval) {
+            if (!resizeApproximate) {
+                return false;
+            }
+            approximate(parent, bounds);
+            lastLayoutTime = System.nanoTime();
+        }
+        coalescedLayouts++;
+        return true;
+    }
+
+    /**
+     * Scale bounds of components from last exact pass to given bounds.
+     */
+    private void approximate(Container parent, Rectangle bounds) {
+        if (!approximated) {
+            approximated = true;
+            exactComponents = parent.getComponents();
+            int n = exactComponents.length;
+            exactBounds = new int[n * 4];
+            for (int i = 0; i < n; i++) {
+                Component c = exactComponents[i];
+                exactBounds[i * 4] = c.getX();
+                exactBounds[i * 4 + 1] = c.getY();
+                exactBounds[i * 4 + 2] = c.getWidth();
+                exactBounds[i * 4 + 3] = c.getHeight();
+            }
+        }
+        double sx = bounds.width / (double) lastBounds.width;
+        double sy = bounds.height / (double) lastBounds.height;
+        for (int i = 0; i < exactComponents.length; i++) {
+            Component c = exactComponents[i];
+            if (c.getParent() != parent) {
+                continue;
+            }
+            // scale edges, so adjacent components stay adjacent
+            int x0 = exactBounds[i * 4] - lastBounds.x;
+            int y0 = exactBounds[i * 4 + 1] - lastBounds.y;
+            int x1 = x0 + exactBounds[i * 4 + 2];
+            int y1 = y0 + exactBounds[i * 4 + 3];
+            int x = (int) Math.round(x0 * sx);
+            int y = (int) Math.round(y0 * sy);
+            c.setBounds(bounds.x + x, bounds.y + y, (int) Math.round(x1 * sx) - x, (int) Math.round(y1 * sy) - y);
+        }
+    }
+
+    private void layoutExact(Container parent, Rectangle bounds) {
+        resizeEnded = false;
+        if (resizeTimer != null) {
+            resizeTimer.stop();
+            resizeTarget = null;
+        }
+        if (approximated) {
+            // components of unchanged subtrees were moved by approximate pass
+            approximated = false;
+            exactComponents = null;
+            exactBounds = null;
+            root.requestLayoutTree();
+        }
+        lastBounds.setBounds(bounds);
+        try {
+            layoutNow(parent, bounds);
+        } finally {
+            lastModCount = root.getModCount();
+            // interval is counted from end of pass, so slow pass doesn't
+            // block Event Dispatch Thread for whole resize
+            lastLayoutTime = System.nanoTime();
+        }
+    }
+
+    private void layoutNow(Container parent, Rectangle bounds) {
+        checkSizes();
+        if (executor != null && layoutAsync(parent, bounds)) {
+            return;
+        }
+        if (compiled) {
+            LayoutPlan current = currentPlan();
+            if (current != null) {
+                current.layout(bounds, context);
+                return;
+            }
+        }
+        root.layout(bounds, context);
+    }
+
+    /**
+     * @return plan of current tree or null if tree can't be compiled. Tree
+     *         which can't be compiled is not compiled again until it is
+     *         changed.
+     */
+    private LayoutPlan currentPlan() {
+        int modCount = root.getModCount();
+        if ((plan == null || plan.getModCount() != modCount) && modCount != uncompiledModCount) {
+            plan = LayoutPlan.compile(root);
+            if (plan == null) {
+                uncompiledModCount = modCount;
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * Measure leafs on EDT, compute bounds with executor and apply them later
+     * on EDT. Only one computation runs at a time, request made while it runs
+     * starts new computation after it is done. Result is discarded if tree was
+     * changed, layout was requested again or mode of layout was changed in
+     * the meantime.
+     * <p>
+     * Computation works on its own copy of plan and its own LayoutContext, so
+     * it never shares state with synchronous passes. Applied result is
+     * followed by revalidate of Container, so child Containers are validated.
+     *
+     * @return false if tree can't be compiled, layout must be done
+     * synchronously then
+     */
+    private boolean layoutAsync(final Container parent, Rectangle bounds) {
+        LayoutPlan last = applied;
+        applied = null;
+        if (last != null && bounds.equals(appliedBounds) && last.getModCount() == root.getModCount()
+                && !last.measureLeaves()) {
+            // pass of validation which follows applied result
+            return true;
+        }
+        generation++;
+        if (running) {
+            pending = true;
+            return true;
+        }
+        LayoutPlan current = currentPlan();
+        if (current == null) {
+            return false;
+        }
+        final LayoutPlan p = current.copy();
+        final LayoutContext ctx = new LayoutContext();
+        final int gen = generation;
+        final int modCount = root.getModCount();
+        final Rectangle dest = new Rectangle(bounds);
+        p.measureLeaves();
+        try {
+            executor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    RuntimeException error = null;
+                    try {
+                        p.compute(dest, ctx);
+                    } catch (RuntimeException ex) {
+                        error = ex;
+                    }
+                    final RuntimeException failure = error;
+                    SwingUtilities.invokeLater(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            running = false;
+                            boolean current = gen == generation && modCount == root.getModCount();
+                            if (failure == null && current) {
+                                ctx.commit();
+                                p.applyItems();
+                                applied = p;
+                                appliedBounds.setBounds(dest);
+                                revalidate(parent);
+                            } else {
+                                ctx.discard();
+                                if (failure != null) {
+                                    StackTraceUtil.severe(failure);
+                                }
+                                if (pending || failure == null) {
+                                    revalidate(parent);
+                                }
+                            }
+                            pending = false;
+                        }
+                    });
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            return false;
+        }
+        running = true;
+        return true;
+    }
+
+    /**
+     * Request layout of given Container through validation, so child
+     * Containers are validated too.
+     */
+    private static void revalidate(Container target) {
+        if (target instanceof JComponent && target.getParent() != null) {
+            // layout is done once by RepaintManager, together with ancestors
+            ((JComponent) target).revalidate();
+        } else if (target != null) {
+            // revalidate does nothing for JComponent without parent
+            target.invalidate();
+            target.validate();
+        }
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Set executor for asynchronous layout. In asynchronous mode only
+     * preferred sizes of components are read in layoutContainer, bounds are
+     * computed by given executor (using compiled plan, see
+     * {@link #setCompiled(boolean)}) and applied later on Event Dispatch
+     * Thread in one batch. This keeps UI responsive while large container is
+     * resized. Result of computation, which runs while executor or compiled
+     * mode is changed, is discarded.
+     *
+     * @param executor executor or null for synchronous layout
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+        // result of running computation is discarded
+        generation++;
+        applied = null;
+    }
+
+    /**
+     * Enable parallel layout: children of RectNode and GridNode with large
+     * subtrees are arranged by tasks of given pool. Measure pass and applying
+     * of bounds are still done by calling thread. Has no effect in compiled
+     * and asynchronous modes.
+     *
+     * @param pool pool or null for sequential layout
+     * @param threshold minimum number of nodes in subtree to arrange it in
+     * parallel. Smaller neighbour subtrees are arranged by one task.
+     */
+    public void setParallel(ForkJoinPool pool, int threshold) {
+        context.setParallel(pool, threshold);
+    }
+
+    public boolean isCompiled() {
+        return compiled;
+    }
+
+    /**
+     * In compiled mode node tree is converted to flat array-based plan, which
+     * is reused for every layout pass (for example while window is resized)
+     * and compiled again only after structural or property change of the
+     * tree. Trees with custom LayoutNode types are always laid out directly.
+     *
+     * @param compiled
+     */
+    public void setCompiled(boolean compiled) {
+        this.compiled = compiled;
+        generation++;
+        applied = null;
+        if (!compiled) {
+            plan = null;
+        }
+    }
 
-        root.layout(bounds);
+    private Insets getInsets(Container parent) {
+        if (parent instanceof JComponent) {
+            return ((JComponent) parent).getInsets(insets);
+        }
+        return parent.getInsets();
+    }
+
+    /**
+     * @return statistics of last layout pass
+     */
+    public LayoutContext getLayoutContext() {
+        return context;
     }
 
     /**
@@ -312,18 +853,17 @@ public class JNodeLayout implements LayoutManager2 {
             return;
         }
         NodeConstraints constr = (NodeConstraints) constraints;
-        LayoutNode node = map.get(constr.getName());
+        LayoutNode node = constr.getNode();
         if (node == null) {
-            node = root.findNode(constr.getName());
-            if (node != null) {
-                map.put(constr.getName(), node);
-            }
+            node = getNode(constr.getName());
         }
-        if (node != null) {
-            LeafNode leaf = node.addLeafNode(comp, constr.getConstraints());
-            byComponent.put(comp, leaf);
-        } else {
+        if (node == null) {
             StackTraceUtil.severe(new NullPointerException("Node not found: " + constr.getName()));
+        } else if (node.getOwner() != this) {
+            StackTraceUtil.severe(new IllegalArgumentException("Node is not part of this layout: " + node.getName()));
+        } else {
+            // leaf is registered by nodeAttached
+            node.addLeafNode(comp, constr.getConstraints());
         }
     }
 
@@ -332,33 +872,65 @@ public class JNodeLayout implements LayoutManager2 {
     }
 
     /**
-     * Register nodes which was added direct to LayoutNode.
+     * This method does nothing. Nodes added direct to LayoutNode are
+     * registered automatically.
+     *
+     * @deprecated not needed anymore
      */
+    @Deprecated
     public void syncNodes() {
-        syncNode(this.root);
     }
 
-    private void syncNode(LayoutNode parent) {
-        for (LayoutNode child : parent) {
-            if (!child.isLeaf()) {
-                putNode(child);
-                syncNode(child);
-            } else {
-                LeafNode leafNode = (LeafNode) child;
-                byComponent.put(leafNode.getComponent(), leafNode);
+    /**
+     * Called by LayoutNode when node was added to tree of this layout.
+     * Registers given node and all its children.
+     */
+    void nodeAttached(LayoutNode node) {
+        if (node instanceof LeafNode) {
+            LeafNode leafNode = (LeafNode) node;
+            byComponent.put(leafNode);
+        } else if (!node.isLeaf()) {
+            putNode(node);
+            registerChildren(node);
+        }
+    }
+
+    /**
+     * Called by LayoutNode when node was removed from tree of this layout.
+     * Unregisters given node and all its children.
+     */
+    void nodeDetached(LayoutNode node) {
+        if (node instanceof LeafNode) {
+            byComponent.remove((LeafNode) node);
+        } else if (!node.isLeaf()) {
+            if (node.getName() != null) {
+                map.remove(node.getName(), node);
+            }
+            for (LayoutNode child : node) {
+                nodeDetached(child);
             }
         }
     }
 
+    private void registerChildren(LayoutNode parent) {
+        for (LayoutNode child : parent) {
+            nodeAttached(child);
+        }
+    }
+
     private void putNode(LayoutNode node) {
+        if (node.getName() == null) {
+            // unnamed nodes can't be found by name
+            return;
+        }
         LayoutNode oldNode = map.get(node.getName());
+        if (Objects.equals(node, oldNode)) {
+            return;
+        }
         if (oldNode != null) {
             String message = "Warning: node with key \"" + node.getName() + "\" already exists " + oldNode.hashCode();
             StackTraceUtil.warning(message);
         }
-        if(Objects.equals(node, oldNode)) {
-            return;
-        }
         map.put(node.getName(), node);
     }
 
@@ -373,7 +945,7 @@ public class JNodeLayout implements LayoutManager2 {
         for (LayoutNode child : parent) {
             if (!child.isLeaf()) {
                 String name = child.getName();
-                if (map.get(name) != child) {
+                if (name != null && map.get(name) != child) {
                     throw new RuntimeException("Verify failed: node " + child.getName() + " " + child
                             + "in not registered or uses same key with another node");
                 }
@@ -384,7 +956,24 @@ public class JNodeLayout implements LayoutManager2 {
 
     @Override
     public Dimension maximumLayoutSize(Container target) {
-        return root.preferredSize();
+        return rootSize();
+    }
+
+    /**
+     * @return preferred size of root node, which is measured only once inside
+     * of update transaction
+     */
+    private Dimension rootSize() {
+        if (updateLevel > 0 && updateSize != null) {
+            avoidedMeasures++;
+            return new Dimension(updateSize);
+        }
+        checkSizes();
+        Dimension d = root.preferredSize();
+        if (updateLevel > 0) {
+            updateSize = new Dimension(d);
+        }
+        return d;
     }
 
     @Override
@@ -397,8 +986,38 @@ public class JNodeLayout implements LayoutManager2 {
         return 0;
     }
 
+    /**
+     * Note that cached preferred sizes may be out of date. Takes O(1), leafs
+     * are checked once, before next measure pass: leafs of Swing components
+     * are notified about changes of their components and keep their sizes,
+     * unless component was invalidated. Only nodes which size was changed
+     * will be arranged again.
+     */
     @Override
     public void invalidateLayout(Container target) {
+        staleTarget = target;
+        if (updateLevel > 0) {
+            updatePending = true;
+            updateTarget = target;
+        }
+    }
 
+    /**
+     * Discard sizes of leafs which may be out of date since last
+     * {@link #invalidateLayout(Container)}. Only components of invalidated
+     * Container are checked, by index and without allocation.
+     */
+    private void checkSizes() {
+        Container target = staleTarget;
+        if (target == null) {
+            return;
+        }
+        staleTarget = null;
+        for (int i = 0, n = target.getComponentCount(); i < n; i++) {
+            LeafNode leaf = byComponent.get(target.getComponent(i));
+            if (leaf != null) {
+                leaf.invalidateIfStale();
+            }
+        }
     }
 }
@@ -0,0 +1,307 @@
+package com.smartg.swing.layout;
+
+import java.awt.Component;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * State of one layout pass. JNodeLayout keeps one LayoutContext and reuses it
+ * for every pass, so statistics of the last pass are available after
+ * layoutContainer returns.
+ * <p>
+ * Leaf nodes don't move their components directly. Target bounds are
+ * collected in a flat buffer and applied by {@link #commit()} at the end of
+ * the pass, which calls setBounds only for components which bounds really
+ * changed.
+ * <p>
+ * Context also holds scratch objects reused by every pass, so repeated layout
+ * of unchanged tree doesn't allocate.
+ * <p>
+ * If ForkJoinPool is set, RectNode and GridNode arrange large subtrees in
+ * parallel (see {@link Forks}). Each task collects bounds in its own context,
+ * contexts of tasks are merged in order of children, so commit is still made
+ * by one thread. Subtrees with virtual nodes are never forked, because
+ * virtual nodes add components to target during arrange.
+ */
+public final class LayoutContext {
+
+	private int visitedNodes;
+	private int skippedNodes;
+
+	private int changedBounds;
+	private int unchangedBounds;
+
+	private Component[] components = new Component[16];
+	// x, y, width, height for each component
+	private int[] bounds = new int[16 * 4];
+	private int count;
+
+	// one Rectangle for children of each tree level
+	private Rectangle[] childBounds = new Rectangle[8];
+	private int depth;
+
+	private ForkJoinPool pool;
+	private int threshold;
+
+	LayoutContext() {
+	}
+
+	/**
+	 * @param pool pool for parallel arrange or null
+	 * @param threshold minimum number of nodes in subtree, which is arranged
+	 *            in parallel
+	 */
+	void setParallel(ForkJoinPool pool, int threshold) {
+		this.pool = pool;
+		this.threshold = Math.max(1, threshold);
+	}
+
+	/**
+	 * @return true if ForkJoinPool is set
+	 */
+	boolean isParallel() {
+		return pool != null;
+	}
+
+	/**
+	 * @return true if children of given node should be arranged in parallel
+	 */
+	boolean isParallel(LayoutNode node) {
+		return pool != null && node.getTreeSize() >= threshold;
+	}
+
+	Forks forks(int count) {
+		return new Forks(count);
+	}
+
+	/**
+	 * Children of one node, which are arranged in parallel by
+	 * {@link #join()}. Adjacent children with small subtrees are arranged by
+	 * same task. Children which are not parallel safe are arranged by calling
+	 * thread after tasks are finished.
+	 */
+	final class Forks {
+		private final LayoutNode[] nodes;
+		private final Rectangle[] bounds;
+		private int count;
+
+		private Forks(int capacity) {
+			nodes = new LayoutNode[capacity];
+			bounds = new Rectangle[capacity];
+		}
+
+		void add(LayoutNode node, Rectangle dest) {
+			nodes[count] = node;
+			bounds[count] = new Rectangle(dest);
+			count++;
+		}
+
+		void join() {
+			final ArrayList<ArrangeTask> tasks = new ArrayList<>();
+			int start = 0;
+			int size = 0;
+			for (int i = 0; i < count; i++) {
+				if (nodes[i].isParallelSafe()) {
+					size += nodes[i].getTreeSize();
+				}
+				if (size >= threshold || i == count - 1) {
+					LayoutContext context = new LayoutContext();
+					context.setParallel(pool, threshold);
+					tasks.add(new ArrangeTask(nodes, bounds, start, i + 1, context));
+					start = i + 1;
+					size = 0;
+				}
+			}
+			if (tasks.size() == 1) {
+				tasks.get(0).compute();
+			} else if (ForkJoinTask.inForkJoinPool()) {
+				ForkJoinTask.invokeAll(tasks);
+			} else {
+				pool.invoke(new RecursiveAction() {
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					protected void compute() {
+						invokeAll(tasks);
+					}
+				});
+			}
+			for (ArrangeTask task : tasks) {
+				merge(task.context);
+			}
+			for (int i = 0; i < count; i++) {
+				if (!nodes[i].isParallelSafe()) {
+					nodes[i].arrange(bounds[i], LayoutContext.this);
+				}
+			}
+		}
+	}
+
+	private static final class ArrangeTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final LayoutNode[] nodes;
+		private final Rectangle[] bounds;
+		private final int from, to;
+		private final LayoutContext context;
+
+		ArrangeTask(LayoutNode[] nodes, Rectangle[] bounds, int from, int to, LayoutContext context) {
+			this.nodes = nodes;
+			this.bounds = bounds;
+			this.from = from;
+			this.to = to;
+			this.context = context;
+		}
+
+		@Override
+		protected void compute() {
+			for (int i = from; i < to; i++) {
+				if (nodes[i].isParallelSafe()) {
+					nodes[i].arrange(bounds[i], context);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Append bounds and statistics collected by context of finished task.
+	 */
+	private void merge(LayoutContext other) {
+		visitedNodes += other.visitedNodes;
+		skippedNodes += other.skippedNodes;
+		int n = other.count;
+		if (count + n > components.length) {
+			int capacity = Math.max(count + n, components.length * 2);
+			components = Arrays.copyOf(components, capacity);
+			bounds = Arrays.copyOf(bounds, capacity * 4);
+		}
+		System.arraycopy(other.components, 0, components, count, n);
+		System.arraycopy(other.bounds, 0, bounds, count * 4, n * 4);
+		count += n;
+	}
+
+	void reset() {
+		depth = 0;
+		visitedNodes = 0;
+		skippedNodes = 0;
+		changedBounds = 0;
+		unchangedBounds = 0;
+		count = 0;
+	}
+
+	void nodeVisited() {
+		visitedNodes++;
+	}
+
+	void nodeSkipped() {
+		skippedNodes++;
+	}
+
+	void enter() {
+		depth++;
+	}
+
+	void exit() {
+		depth--;
+	}
+
+	/**
+	 * Returns scratch Rectangle which node may use to pass bounds to its
+	 * children. Each tree level has its own Rectangle, so it may be reused for
+	 * all children of node.
+	 */
+	public Rectangle getChildBounds() {
+		if (depth >= childBounds.length) {
+			childBounds = Arrays.copyOf(childBounds, depth * 2);
+		}
+		Rectangle r = childBounds[depth];
+		if (r == null) {
+			r = new Rectangle();
+			childBounds[depth] = r;
+		}
+		return r;
+	}
+
+	/**
+	 * Remember target bounds for component. Bounds will be applied by
+	 * {@link #commit()}.
+	 */
+	void setBounds(Component c, int x, int y, int width, int height) {
+		if (count == components.length) {
+			components = Arrays.copyOf(components, count * 2);
+			bounds = Arrays.copyOf(bounds, count * 2 * 4);
+		}
+		components[count] = c;
+		int i = count * 4;
+		bounds[i] = x;
+		bounds[i + 1] = y;
+		bounds[i + 2] = width;
+		bounds[i + 3] = height;
+		count++;
+	}
+
+	/**
+	 * Apply collected bounds. Components which already have target bounds are
+	 * not touched.
+	 */
+	void commit() {
+		for (int n = 0; n < count; n++) {
+			Component c = components[n];
+			components[n] = null;
+			int i = n * 4;
+			int x = bounds[i];
+			int y = bounds[i + 1];
+			int width = bounds[i + 2];
+			int height = bounds[i + 3];
+			if (c.getX() != x || c.getY() != y || c.getWidth() != width || c.getHeight() != height) {
+				c.setBounds(x, y, width, height);
+				changedBounds++;
+			} else {
+				unchangedBounds++;
+			}
+		}
+		count = 0;
+	}
+
+	/**
+	 * Forget collected bounds without applying them.
+	 */
+	void discard() {
+		Arrays.fill(components, 0, count, null);
+		count = 0;
+	}
+
+	/**
+	 * @return number of nodes arranged during last pass
+	 */
+	public int getVisitedNodes() {
+		return visitedNodes;
+	}
+
+	/**
+	 * @return number of subtrees skipped during last pass, because they was
+	 *         not changed and got same bounds as before
+	 */
+	public int getSkippedNodes() {
+		return skippedNodes;
+	}
+
+	/**
+	 * @return number of components moved or resized by last pass
+	 */
+	public int getChangedBounds() {
+		return changedBounds;
+	}
+
+	/**
+	 * @return number of components arranged by last pass which already had
+	 *         target bounds
+	 */
+	public int getUnchangedBounds() {
+		return unchangedBounds;
+	}
+}
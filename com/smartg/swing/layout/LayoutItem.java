@@ -0,0 +1,16 @@
+package com.smartg.swing.layout;
+
+/**
+ * Measurable item, which may be laid out by LayoutNode tree instead of
+ * Component. Items allow to use node trees without Swing (for example to lay
+ * out printed forms on server).
+ *
+ * @see LayoutNode#addItem(LayoutItem, Object)
+ * @see LayoutNode#layoutItems(java.awt.Rectangle)
+ */
+public interface LayoutItem {
+
+	int getPreferredWidth();
+
+	int getPreferredHeight();
+}
@@ -39,11 +39,20 @@ import java.awt.Graphics2D;
 import java.awt.Insets;
 import java.awt.Rectangle;
 import java.awt.geom.Rectangle2D;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
+import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
+import javax.swing.border.AbstractBorder;
 import javax.swing.border.Border;
 
 import com.smartg.java.util.PreorderIterator;
@@ -53,6 +62,12 @@ import com.smartg.util.EmptyIterator;
  * Tree-like layout manager. Components are placed only leafs (one leaf contains
  * just one component). Currently implemented nodes are GridNode,
  * HorizontalNode, VerticalNode and LeafNode.
+ * <p>
+ * Nodes are not thread safe. Tree of JNodeLayout may be changed only on Event
+ * Dispatch Thread, tree which is not attached to any layout may be built by
+ * one background thread.
+ *
+ * @see JNodeLayout#addLayoutNodeLater(LayoutNode, String, Object)
  */
 public abstract class LayoutNode implements Iterable<LayoutNode> {
 
@@ -60,7 +75,6 @@ public abstract class LayoutNode implements Iterable<LayoutNode> {
 	private LayoutNode parent;
 	protected NodeAlignment horizontalAlignment = NodeAlignment.STRETCHED;
 	protected NodeAlignment verticalAlignment = NodeAlignment.STRETCHED;
-	protected ArrayList<LayoutNode> invalidNodes = new ArrayList<>();
 	private Integer hgap, vgap;
 	private Boolean debug;
 
@@ -68,11 +82,263 @@ public abstract class LayoutNode implements Iterable<LayoutNode> {
 
 	private Container target;
 
+	// set only for root node of JNodeLayout
+	private JNodeLayout owner;
+
+	// position in NodeList of parent
+	int slot = -1;
+
+	private Insets insets;
+
+	private boolean measured;
+	private int measuredWidth, measuredHeight;
+
+	private boolean needsLayout = true;
+	private int modCount;
+	// number of nodes in subtree, updated by measure
+	private int treeSize = 1;
+	// number of virtual nodes in subtree, updated by attach and detach
+	private int virtualNodes = this instanceof VirtualNode ? 1 : 0;
+	private int arrangedX, arrangedY, arrangedWidth, arrangedHeight;
+
 	public LayoutNode(String name) {
 		this.name = name;
 	}
 
-	public abstract Dimension preferredSize();
+	/**
+	 * Returns preferred size of this node. Size is computed once and cached
+	 * until node (or one of its children) is invalidated.
+	 * 
+	 * @see #invalidate()
+	 */
+	public Dimension preferredSize() {
+		measure();
+		return new Dimension(measuredWidth, measuredHeight);
+	}
+
+	/**
+	 * Measure pass: record preferred size of this node (and, recursively, of
+	 * its children). Does nothing if recorded size is still valid.
+	 */
+	public void measure() {
+		if (!measured) {
+			int width = measuredWidth;
+			int height = measuredHeight;
+			measureNode();
+			measured = true;
+			if (width != measuredWidth || height != measuredHeight) {
+				requestLayout();
+			}
+			if (!isLeaf()) {
+				int n = 1;
+				for (LayoutNode node : this) {
+					n += node.treeSize;
+				}
+				treeSize = n;
+			}
+		}
+	}
+
+	/**
+	 * @return number of nodes in subtree of this node, as counted by last
+	 *         measure pass
+	 */
+	int getTreeSize() {
+		return treeSize;
+	}
+
+	/**
+	 * @return false if subtree of this node contains virtual node. Virtual
+	 *         nodes create and add components during arrange, so they must be
+	 *         arranged by calling thread.
+	 */
+	boolean isParallelSafe() {
+		return virtualNodes == 0;
+	}
+
+	private void countVirtualNodes(int delta) {
+		for (LayoutNode node = this; node != null; node = node.parent) {
+			node.virtualNodes += delta;
+		}
+	}
+
+	/**
+	 * Compute preferred size of this node and record it with
+	 * {@link #setMeasuredSize(int, int)}. Called by {@link #measure()} when
+	 * recorded size is not valid. Implementations should obtain size of
+	 * children with {@link #getMeasuredWidth()} and
+	 * {@link #getMeasuredHeight()}.
+	 */
+	protected abstract void measureNode();
+
+	protected void setMeasuredSize(int width, int height) {
+		measuredWidth = width;
+		measuredHeight = height;
+	}
+
+	/**
+	 * @return preferred width recorded by measure pass
+	 */
+	protected int getMeasuredWidth() {
+		measure();
+		return measuredWidth;
+	}
+
+	/**
+	 * @return preferred height recorded by measure pass
+	 */
+	protected int getMeasuredHeight() {
+		measure();
+		return measuredHeight;
+	}
+
+	/**
+	 * Discard cached preferred size of this node and of all its ancestors and
+	 * mark them for layout. Preferred sizes above of {@link BoundaryNode} are
+	 * kept, ancestors of boundary are only marked for layout.
+	 */
+	public void invalidate() {
+		boolean sizes = true;
+		for (LayoutNode node = this; node != null; node = node.parent) {
+			if (sizes) {
+				node.measured = false;
+			}
+			node.needsLayout = true;
+			if (node instanceof BoundaryNode) {
+				sizes = false;
+			}
+		}
+	}
+
+	/**
+	 * Same as {@link #invalidate()}, but also counts change of tree structure
+	 * or of node property which is captured by compiled plan. Changes of
+	 * preferred sizes of leafs are not counted.
+	 *
+	 * @see #getModCount()
+	 */
+	void invalidateStructure() {
+		invalidate();
+		LayoutNode node = this;
+		while (node.parent != null) {
+			node = node.parent;
+		}
+		node.modCount++;
+	}
+
+	/**
+	 * @return number of structural or property changes made to the tree which
+	 *         has this node as root
+	 */
+	int getModCount() {
+		return modCount;
+	}
+
+	/**
+	 * Discard cached preferred sizes of this node, its ancestors and all its
+	 * descendants. Used when change may affect whole subtree (gaps are
+	 * inherited by children).
+	 */
+	void invalidateTree() {
+		invalidateChildren();
+		invalidateStructure();
+	}
+
+	private void invalidateChildren() {
+		measured = false;
+		needsLayout = true;
+		for (LayoutNode node : this) {
+			node.invalidateChildren();
+		}
+	}
+
+	/**
+	 * Mark this node and all its ancestors for layout.
+	 */
+	protected void requestLayout() {
+		for (LayoutNode node = this; node != null; node = node.parent) {
+			node.needsLayout = true;
+		}
+	}
+
+	/**
+	 * Mark this node and all its descendants for layout, so next pass
+	 * arranges whole subtree even where bounds are the same.
+	 */
+	void requestLayoutTree() {
+		needsLayout = true;
+		for (LayoutNode node : this) {
+			node.requestLayoutTree();
+		}
+	}
+
+	/**
+	 * Remove given node from its current parent, if it is not this node. Node
+	 * remembers only one slot, so subclasses should call this method from
+	 * {@link #add(LayoutNode, Object)} before node is stored.
+	 */
+	protected void adopt(LayoutNode child) {
+		LayoutNode old = child.parent;
+		if (old != null && old != this) {
+			old.remove(child);
+		}
+	}
+
+	/**
+	 * Make this node parent of given child. Subclasses should call this method
+	 * from {@link #add(LayoutNode, Object)}.
+	 */
+	protected void attach(LayoutNode child) {
+		child.parent = this;
+		if (child.virtualNodes != 0) {
+			countVirtualNodes(child.virtualNodes);
+		}
+		if (child instanceof LeafNode) {
+			((LeafNode) child).track(true);
+		}
+		child.invalidateTree();
+		JNodeLayout owner = getOwner();
+		if (owner != null) {
+			owner.nodeAttached(child);
+		}
+	}
+
+	/**
+	 * Detach given child from this node. Subclasses should call this method
+	 * from {@link #remove(LayoutNode)}.
+	 */
+	protected void detach(LayoutNode child) {
+		if (child.parent == this) {
+			child.parent = null;
+			if (child.virtualNodes != 0) {
+				countVirtualNodes(-child.virtualNodes);
+			}
+			if (child instanceof LeafNode) {
+				((LeafNode) child).track(false);
+			}
+			JNodeLayout owner = getOwner();
+			if (owner != null) {
+				owner.nodeDetached(child);
+			}
+		}
+		invalidateStructure();
+	}
+
+	/**
+	 * @return JNodeLayout which uses root of this node, or null if node is not
+	 *         (yet) part of such tree
+	 */
+	JNodeLayout getOwner() {
+		LayoutNode node = this;
+		while (node.parent != null) {
+			node = node.parent;
+		}
+		return node.owner;
+	}
+
+	void setOwner(JNodeLayout owner) {
+		this.owner = owner;
+	}
 
 	public void add(LayoutNode layout) {
 		add(layout, null);
@@ -91,8 +357,31 @@ public abstract class LayoutNode implements Iterable<LayoutNode> {
 		return new Insets(0, 0, 0, 0);
 	}
 
+	/**
+	 * Same as {@link #getNodeInsets()}, but reuses Insets object of this node,
+	 * so returned value must not be modified or kept.
+	 */
+	Insets nodeInsets() {
+		if (insets == null) {
+			insets = new Insets(0, 0, 0, 0);
+		}
+		Border b = getBorder();
+		Container t = getTarget();
+		if (b instanceof AbstractBorder && t != null) {
+			return ((AbstractBorder) b).getBorderInsets(t, insets);
+		}
+		if (b != null && t != null) {
+			Insets i = b.getBorderInsets(t);
+			insets.set(i.top, i.left, i.bottom, i.right);
+		} else {
+			insets.set(0, 0, 0, 0);
+		}
+		return insets;
+	}
+
 	public void setBorder(Border border) {
 		this.border = border;
+		invalidateStructure();
 	}
 
 	public abstract void add(LayoutNode layout, Object constraints);
@@ -110,6 +399,7 @@ public abstract class LayoutNode implements Iterable<LayoutNode> {
 
 	void setTarget(Container target) {
 		this.target = target;
+		invalidateTree();
 	}
 
 	public void print(int level) {
@@ -174,17 +464,6 @@ public abstract class LayoutNode implements Iterable<LayoutNode> {
 		return className + " [name=" + name + "]";
 	}
 
-	/**
-	 * We have to remove leaf nodes (which was added not through LayoutManager),
-	 * after their child-component was removed from target Container;
-	 */
-	protected void removeInvalidNodes() {
-		while (invalidNodes.size() > 0) {
-			LayoutNode node = invalidNodes.remove(0);
-			remove(node);
-		}
-	}
-
 	public void add(Component comp) {
 		add(comp, null);
 	}
@@ -194,6 +473,40 @@ public abstract class LayoutNode implements Iterable<LayoutNode> {
 		add(leaf, constraints);
 	}
 
+	/**
+	 * Add leaf node for given item.
+	 *
+	 * @see #layoutItems(Rectangle)
+	 */
+	public void addItem(LayoutItem item, Object constraints) {
+		add(new ItemNode(item), constraints);
+	}
+
+	/**
+	 * Layout this node and its children inside of given bounds without
+	 * Swing: only preferred sizes of items are used and no Container is
+	 * required. Leafs with Components are laid out as usual.
+	 *
+	 * @return bounds of all items of this tree
+	 */
+	public Map<LayoutItem, Rectangle> layoutItems(Rectangle dest) {
+		layout(new Rectangle(dest));
+		Map<LayoutItem, Rectangle> map = new IdentityHashMap<>();
+		collectItems(map);
+		return map;
+	}
+
+	private void collectItems(Map<LayoutItem, Rectangle> map) {
+		for (LayoutNode node : this) {
+			if (node instanceof ItemNode) {
+				ItemNode itemNode = (ItemNode) node;
+				map.put(itemNode.getItem(), itemNode.getBounds());
+			} else {
+				node.collectItems(map);
+			}
+		}
+	}
+
 	LeafNode addLeafNode(Component comp, Object constraints) {
 		LeafNode leaf = new LeafNode(this, comp);
 		add(leaf, constraints);
@@ -208,7 +521,68 @@ public abstract class LayoutNode implements Iterable<LayoutNode> {
 		return false;
 	}
 
-	public abstract void layout(Rectangle dest);
+	/**
+	 * Layout this node and its children inside of given bounds. Runs measure
+	 * pass followed by arrange pass.
+	 */
+	public void layout(Rectangle dest) {
+		layout(dest, new LayoutContext());
+	}
+
+	void layout(Rectangle dest, LayoutContext context) {
+		context.reset();
+		measure();
+		if (context.isParallel()) {
+			// boundaries are not reached by measure of root, they must be
+			// measured by this thread before arrange is forked
+			measureDirty();
+		}
+		arrange(dest, context);
+		context.commit();
+	}
+
+	/**
+	 * Measure all nodes marked for layout.
+	 */
+	private void measureDirty() {
+		if (needsLayout) {
+			measure();
+			for (LayoutNode node : this) {
+				node.measureDirty();
+			}
+		}
+	}
+
+	/**
+	 * Arrange this node inside of given bounds. Node is skipped (with all its
+	 * children) if it was not changed since last pass and bounds are the same.
+	 */
+	protected final void arrange(Rectangle dest, LayoutContext context) {
+		if (!needsLayout && dest.x == arrangedX && dest.y == arrangedY && dest.width == arrangedWidth
+				&& dest.height == arrangedHeight) {
+			context.nodeSkipped();
+			return;
+		}
+		needsLayout = false;
+		arrangedX = dest.x;
+		arrangedY = dest.y;
+		arrangedWidth = dest.width;
+		arrangedHeight = dest.height;
+
+		context.nodeVisited();
+		context.enter();
+		arrangeNode(dest, context);
+		context.exit();
+	}
+
+	/**
+	 * Arrange pass: position children inside of given bounds. Implementations
+	 * should only read sizes recorded by {@link #measure()} and call
+	 * {@link #arrange(Rectangle, LayoutContext)} for children. To avoid
+	 * allocations bounds of children should be passed in
+	 * {@link LayoutContext#getChildBounds()}.
+	 */
+	protected abstract void arrangeNode(Rectangle dest, LayoutContext context);
 
 	public int getHgap() {
 		if (hgap != null) {
@@ -222,6 +596,7 @@ public abstract class LayoutNode implements Iterable<LayoutNode> {
 
 	public void setHgap(int hgap) {
 		this.hgap = hgap;
+		invalidateTree();
 	}
 
 	public int getVgap() {
@@ -236,6 +611,7 @@ public abstract class LayoutNode implements Iterable<LayoutNode> {
 
 	public void setVgap(int vgap) {
 		this.vgap = vgap;
+		invalidateTree();
 	}
 
 	public LayoutNode getParent() {
@@ -253,6 +629,7 @@ public abstract class LayoutNode implements Iterable<LayoutNode> {
 			throw new IllegalArgumentException("Using vertical constant for horizontal alignment.");
 		default:
 			this.horizontalAlignment = alignment;
+			invalidateStructure();
 			break;
 		}
 	}
@@ -274,7 +651,7 @@ public abstract class LayoutNode implements Iterable<LayoutNode> {
 		private Component goNext() {
 			while (iterator.hasNext()) {
 				LayoutNode node = iterator.next();
-				if (node.isLeaf()) {
+				if (node instanceof LeafNode) {
 					LeafNode leafNode = (LeafNode) node;
 					return leafNode.getComponent();
 				}
@@ -303,12 +680,6 @@ public abstract class LayoutNode implements Iterable<LayoutNode> {
 		return verticalAlignment;
 	}
 
-	protected void setInvalidNode(LayoutNode node) {
-		if (node != null && node.getParent() == this && !invalidNodes.contains(node)) {
-			invalidNodes.add(node);
-		}
-	}
-
 	public void setVerticalAlignment(NodeAlignment alignment) {
 		switch (alignment) {
 		case LEFT:
@@ -316,10 +687,117 @@ public abstract class LayoutNode implements Iterable<LayoutNode> {
 			throw new IllegalArgumentException("Using horizontal constant for vertical alignment.");
 		default:
 			this.verticalAlignment = alignment;
+			invalidateStructure();
 			break;
 		}
 	}
 
+	/**
+	 * Compute bounds of leaf content inside of given bounds (respecting
+	 * insets, gaps and alignment of this node). Result is stored in dest.
+	 */
+	void alignLeaf(Rectangle dest) {
+		Insets insets = nodeInsets();
+
+		dest.x += insets.left;
+		dest.y += insets.top;
+		dest.width -= insets.left + insets.right;
+		dest.height -= insets.top + insets.bottom;
+
+		int hgap = getHgap();
+		int vgap = getVgap();
+
+		if (horizontalAlignment == NodeAlignment.STRETCHED && verticalAlignment == NodeAlignment.STRETCHED) {
+			dest.x += hgap;
+			dest.y += vgap;
+			dest.width -= hgap;
+			dest.height -= vgap;
+		} else {
+			int pw = getMeasuredWidth();
+			int ph = getMeasuredHeight();
+
+			double mx = 1;
+			if (horizontalAlignment == NodeAlignment.STRETCHED) {
+				mx = dest.getWidth() / pw;
+			}
+
+			double my = 1;
+			if (verticalAlignment == NodeAlignment.STRETCHED) {
+				my = dest.getHeight() / ph;
+			}
+
+			int dx = adjustX(dest.height, ph);
+			int dy = adjustY(dest.width, pw);
+
+			dest.x += dx + hgap;
+			dest.y += dy + vgap;
+
+			dest.width = (int) (pw * mx - hgap);
+			dest.height = (int) (ph * my - vgap);
+		}
+	}
+
+	/**
+	 * @return part of given bounds which is visible in target (whole bounds
+	 *         if target is not JComponent)
+	 */
+	Rectangle visibleRect(Rectangle dest) {
+		Container target = getTarget();
+		if (target instanceof JComponent) {
+			return ((JComponent) target).getVisibleRect().intersection(dest);
+		}
+		return new Rectangle(dest);
+	}
+
+	/**
+	 * Create leaf of virtual node for given component. Leaf is registered, but
+	 * tree is not invalidated. Leaf doesn't listen to its component: changes
+	 * are reported by virtual node API and only visible rows are measured
+	 * again on revalidate.
+	 */
+	LeafNode realizeLeaf(Component c) {
+		LeafNode leaf = new LeafNode(this, c);
+		JNodeLayout owner = getOwner();
+		if (owner != null) {
+			owner.nodeAttached(leaf);
+		}
+		return leaf;
+	}
+
+	/**
+	 * Detach leaf of virtual node without invalidation of tree. Component stays
+	 * in target with empty bounds, so it may be reused.
+	 */
+	void releaseLeaf(LeafNode leaf, LayoutContext context) {
+		JNodeLayout owner = getOwner();
+		if (owner != null) {
+			owner.nodeDetached(leaf);
+		}
+		((LayoutNode) leaf).parent = null;
+		Component c = leaf.getComponent();
+		if (context != null) {
+			context.setBounds(c, 0, 0, 0, 0);
+		} else {
+			c.setBounds(0, 0, 0, 0);
+		}
+	}
+
+	/**
+	 * Revalidate target after current layout pass. Used by virtual nodes,
+	 * which preferred size changes when rows are measured.
+	 */
+	void revalidateLater() {
+		final Container target = getTarget();
+		if (target instanceof JComponent) {
+			SwingUtilities.invokeLater(new Runnable() {
+				@Override
+				public void run() {
+					((JComponent) target).revalidate();
+				}
+			});
+		}
+	}
+
 	protected int adjustX(int destWidth, int preferredWidth) {
 		int dx = 0;
 		if (horizontalAlignment == NodeAlignment.RIGHT) {
@@ -350,309 +828,1175 @@ public abstract class LayoutNode implements Iterable<LayoutNode> {
 
 	static class LeafNode extends LayoutNode {
 
+		// bound properties of Swing components which may change preferred size
+		private static final Set<String> SIZE_PROPERTIES = new HashSet<>(Arrays.asList("text", "font", "icon",
+				"disabledIcon", "border", "margin", "iconTextGap", "horizontalTextPosition", "verticalTextPosition",
+				"preferredSize", "minimumSize", "maximumSize", "UI"));
+
 		private Component component;
-		private Container container;
+		// set while leaf is in tree, only for JComponents
+		private Tracker tracker;
+		private boolean measuredVisible;
+
+		/**
+		 * Invalidates leaf when property of component, which may change its
+		 * preferred size, was changed. Visibility is not a bound property, it
+		 * is compared with measured visibility by {@link #invalidateIfStale()}.
+		 */
+		private final class Tracker implements PropertyChangeListener {
+
+			@Override
+			public void propertyChange(PropertyChangeEvent e) {
+				if (SIZE_PROPERTIES.contains(e.getPropertyName())) {
+					invalidate();
+				}
+			}
+		}
 
 		LeafNode(LayoutNode p, Component component) {
 			super("");
 			((LayoutNode) this).parent = p;
-			if (getTarget() != null) {
+			if (getTarget() != null && component.getParent() != getTarget()) {
 				getTarget().add(component);
 			}
 			this.component = component;
-			this.container = component.getParent();
 		}
 
-		@Override
-		public Dimension preferredSize() {
-			if (component.getParent() != container) {
-				if (container == null) {
-					container = component.getParent();
-				} else {
-					getParent().setInvalidNode(this);
-					return new Dimension();
-				}
+		/**
+		 * Start or stop listening to changes of component.
+		 */
+		void track(boolean b) {
+			if (b && tracker == null && component instanceof JComponent) {
+				tracker = new Tracker();
+				component.addPropertyChangeListener(tracker);
+			} else if (!b && tracker != null) {
+				component.removePropertyChangeListener(tracker);
+				tracker = null;
 			}
-			int hgap = getHgap();
-			int vgap = getVgap();
+		}
 
-			if (component.isVisible()) {
+		/**
+		 * Invalidate leaf if its size may be out of date. Tracked leaf keeps
+		 * its size, unless component was invalidated (by revalidate of
+		 * component, which is not reported by property change) or visibility
+		 * was changed.
+		 */
+		void invalidateIfStale() {
+			if (tracker == null || !component.isValid() || component.isVisible() != measuredVisible) {
+				invalidate();
+			}
+		}
 
+		@Override
+		protected void measureNode() {
+			measuredVisible = component.isVisible();
+			if (measuredVisible) {
 				Dimension preferredSize = component.getPreferredSize();
+				Insets insets = nodeInsets();
+				int width = preferredSize.width + getHgap() + insets.left + insets.right;
+				int height = preferredSize.height + getVgap() + insets.top + insets.bottom;
+				setMeasuredSize(width, height);
+			} else {
+				setMeasuredSize(0, 0);
+			}
+		}
+
+		@Override
+		public Iterator<LayoutNode> iterator() {
+			return new EmptyIterator<>();
+		}
 
-				preferredSize.width += hgap;
-				preferredSize.height += vgap;
+		@Override
+		public boolean isLeaf() {
+			return true;
+		}
 
-				Insets insets = getNodeInsets();
-				preferredSize.width += insets.left + insets.right;
-				preferredSize.height += insets.top + insets.bottom;
+		@Override
+		public void add(LayoutNode layout, Object constraints) {
+			throw new UnsupportedOperationException();
+		}
 
-				return preferredSize;
+		@Override
+		protected void arrangeNode(Rectangle dest, LayoutContext context) {
+			alignLeaf(dest);
+			int x = dest.x;
+			int y = dest.y;
+			int width = dest.width;
+			int height = dest.height;
+			context.setBounds(component, x, y, width, height);
+			if (isDebug()) {
+				String s = component.getName();
+				if (s != null) {
+					System.out.println(s + " [x=" + x + ",y=" + y + ",width=" + width + ",height=" + height + "]");
+				}
 			}
-			return new Dimension();
+		}
+
+		Component getComponent() {
+			return component;
 		}
 
 		@Override
-		public Iterator<LayoutNode> iterator() {
-			return new EmptyIterator<>();
+		public void remove(LayoutNode layout) {
+
+		}
+
+		@Override
+		public void print(int level) {
+			System.out.println(create(level) + component);
+		}
+
+		@Override
+		public int getCount() {
+			return 1;
+		}
+
+		@Override
+		public String toString() {
+			return super.toString() + " [" + component.getName() + "]";
+		}
+	}
+
+	/**
+	 * Leaf node for {@link LayoutItem}. Bounds computed by last layout pass
+	 * are stored in node.
+	 */
+	public static class ItemNode extends LayoutNode {
+
+		private final LayoutItem item;
+		private final Rectangle bounds = new Rectangle();
+
+		public ItemNode(LayoutItem item) {
+			super("");
+			this.item = item;
+		}
+
+		@Override
+		protected void measureNode() {
+			Insets insets = nodeInsets();
+			int width = item.getPreferredWidth() + getHgap() + insets.left + insets.right;
+			int height = item.getPreferredHeight() + getVgap() + insets.top + insets.bottom;
+			setMeasuredSize(width, height);
+		}
+
+		@Override
+		protected void arrangeNode(Rectangle dest, LayoutContext context) {
+			alignLeaf(dest);
+			bounds.setBounds(dest);
+		}
+
+		public LayoutItem getItem() {
+			return item;
+		}
+
+		void setBounds(int x, int y, int width, int height) {
+			bounds.setBounds(x, y, width, height);
+		}
+
+		/**
+		 * @return bounds computed by last layout pass
+		 */
+		public Rectangle getBounds() {
+			return new Rectangle(bounds);
+		}
+
+		@Override
+		public Iterator<LayoutNode> iterator() {
+			return new EmptyIterator<>();
+		}
+
+		@Override
+		public boolean isLeaf() {
+			return true;
+		}
+
+		@Override
+		public void add(LayoutNode layout, Object constraints) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void remove(LayoutNode layout) {
+
+		}
+
+		@Override
+		public void print(int level) {
+			System.out.println(create(level) + item);
+		}
+
+		@Override
+		public int getCount() {
+			return 1;
+		}
+	}
+
+	public static class VerticalNode extends LayoutNode {
+
+		private final NodeList list = new NodeList(this);
+
+		public VerticalNode(String name) {
+			super(name);
+		}
+
+		@Override
+		protected void measureNode() {
+			int height = 0;
+			int width = 0;
+			for (int i = 0; i < list.size(); i++) {
+				LayoutNode c = list.get(i);
+				height += c.getMeasuredHeight();
+				width = Math.max(width, c.getMeasuredWidth());
+			}
+			Insets insets = nodeInsets();
+			width += insets.left + insets.right;
+			height += insets.top + insets.bottom;
+
+			setMeasuredSize(width, height);
+		}
+
+		@Override
+		public Iterator<LayoutNode> iterator() {
+			return list.iterator();
+		}
+
+		@Override
+		public void add(LayoutNode layout, Object constraints) {
+			adopt(layout);
+			if (list.add(layout)) {
+				attach(layout);
+			}
+		}
+
+		@Override
+		protected void arrangeNode(Rectangle dest, LayoutContext context) {
+			Insets insets = nodeInsets();
+
+			dest.x += insets.left;
+			dest.y += insets.top;
+			dest.width -= insets.left + insets.right;
+			dest.height -= insets.top + insets.bottom;
+
+			int pw = getMeasuredWidth();
+			int ph = getMeasuredHeight();
+			int width;
+			if (horizontalAlignment == NodeAlignment.STRETCHED) {
+				width = dest.width;
+			} else {
+				width = Math.min(dest.width, pw);
+			}
+
+			float m = 1f;
+
+			if (dest.height < ph || verticalAlignment == NodeAlignment.STRETCHED) {
+				m = (float) (dest.getHeight() / ph);
+			}
+
+			int x = dest.x + adjustX(dest.width, pw);
+			int y = dest.y + adjustY(dest.height, ph);
+
+			Rectangle r = context.getChildBounds();
+			for (int i = 0; i < list.size(); i++) {
+				LayoutNode c = list.get(i);
+				double height = c.getMeasuredHeight() * m;
+				r.setBounds(x, y, width, (int) height);
+				c.arrange(r, context);
+				y += height;
+			}
+		}
+
+		@Override
+		public void paintBorder(Graphics g, Rectangle dest) {
+			super.paintBorder(g, dest);
+
+			Xym xym = computeXym(dest);
+
+			for (LayoutNode c : this) {
+				double height = c.getMeasuredHeight() * xym.m;
+				Rectangle r = xym.create(height);
+				c.paintBorder(g, r);
+				xym.y += height;
+			}
+		}
+
+		@Override
+		public void paintNode(Graphics g, Rectangle dest) {
+			super.paintNode(g, dest);
+
+			Xym xym = computeXym(dest);
+
+			for (LayoutNode c : this) {
+				double height = c.getMeasuredHeight() * xym.m;
+				Rectangle r = xym.create(height);
+				c.paintNode(g, r);
+				xym.y += height;
+			}
+		}
+
+		private Xym computeXym(Rectangle dest) {
+			int pw = getMeasuredWidth();
+			int ph = getMeasuredHeight();
+			int width;
+			if (horizontalAlignment == NodeAlignment.STRETCHED) {
+				width = dest.width;
+			} else {
+				width = Math.min(dest.width, pw);
+			}
+
+			float m = 1f;
+
+			if (dest.height < ph || verticalAlignment == NodeAlignment.STRETCHED) {
+				m = (float) (dest.getHeight() / ph);
+			}
+
+			int dx = adjustX(dest.width, pw);
+			int dy = adjustY(dest.height, ph);
+
+			int x = dest.x + dx;
+			int y = dest.y + dy;
+
+			Xym xym = new Xym();
+			xym.x = x;
+			xym.y = y;
+			xym.m = m;
+			xym.width = width;
+
+			return xym;
+		}
+
+		static class Xym {
+
+			float m;
+			int x, y, width;
+
+			Rectangle create(double height) {
+				return new Rectangle(x, y, width, (int) (height));
+			}
+		}
+
+		@Override
+		public void remove(LayoutNode layout) {
+			if (list.remove(layout)) {
+				detach(layout);
+			}
+		}
+
+		@Override
+		public int getCount() {
+			return list.size();
+		}
+	}
+
+	/**
+	 * Vertical node for long lists. Only rows which intersect visible
+	 * rectangle of target (plus overscan) have components. Components are
+	 * created by {@link RowFactory} and recycled when their row is scrolled
+	 * out of view.
+	 * <p>
+	 * Positions of rows are computed from row heights kept in
+	 * {@link TrackIndex}: row which was never shown has estimated height, row
+	 * which was shown keeps its measured height. Rows are never stretched or
+	 * shrunk.
+	 *
+	 * @see VirtualPanel
+	 */
+	public static class VirtualVerticalNode extends LayoutNode implements VirtualNode {
+
+		private final RowFactory factory;
+		private final TrackIndex heights;
+		private int overscan = 100;
+
+		// realized rows, leafs[i] shows row first + i (null if released)
+		private LeafNode[] leafs = new LeafNode[16];
+		private LeafNode[] scratch = new LeafNode[16];
+		private int first;
+		private int count;
+		private final ArrayList<Component> recycled = new ArrayList<>();
+
+		private int maxWidth;
+		// bounds of rows in last pass
+		private int top, left, rowWidth;
+
+		public VirtualVerticalNode(String name, RowFactory factory, int rowCount, int estimatedRowHeight) {
+			super(name);
+			this.factory = factory;
+			this.heights = new TrackIndex(rowCount, estimatedRowHeight);
+		}
+
+		public int getRowCount() {
+			return heights.getCount();
+		}
+
+		/**
+		 * Change number of rows. Components of removed rows are recycled.
+		 */
+		public void setRowCount(int rowCount) {
+			for (int i = 0; i < count; i++) {
+				if (leafs[i] != null && first + i >= rowCount) {
+					release(leafs[i], null);
+					leafs[i] = null;
+				}
+			}
+			heights.setCount(rowCount);
+			invalidate();
+		}
+
+		/**
+		 * Content of given row was changed, row will be measured again and its
+		 * component will be requested from factory on next layout pass.
+		 */
+		public void rowChanged(int row) {
+			int i = row - first;
+			if (i >= 0 && i < count && leafs[i] != null) {
+				release(leafs[i], null);
+				leafs[i] = null;
+			}
+			invalidate();
+		}
+
+		@Override
+		public int getEstimatedRowHeight() {
+			return heights.getDefaultSize();
+		}
+
+		public int getOverscan() {
+			return overscan;
+		}
+
+		/**
+		 * @param overscan height in pixels above and below of visible
+		 *            rectangle, where rows are realized too
+		 */
+		public void setOverscan(int overscan) {
+			this.overscan = overscan;
+			requestLayout();
+		}
+
+		/**
+		 * @return row at given y coordinate of target or -1
+		 */
+		@Override
+		public int getRowAt(int y) {
+			if (y < top || y >= top + heights.getTotal()) {
+				return -1;
+			}
+			return heights.indexAt(y - top);
+		}
+
+		/**
+		 * @return bounds of given row in target, as computed by last layout pass
+		 *         (rows which was never shown have estimated height)
+		 */
+		@Override
+		public Rectangle getRowBounds(int row) {
+			return new Rectangle(left, top + heights.getOffset(row), rowWidth, heights.getSize(row));
+		}
+
+		@Override
+		protected void measureNode() {
+			for (int i = 0; i < count; i++) {
+				LeafNode leaf = leafs[i];
+				if (leaf != null) {
+					heights.setSize(first + i, leaf.getMeasuredHeight());
+					maxWidth = Math.max(maxWidth, leaf.getMeasuredWidth());
+				}
+			}
+			Insets insets = nodeInsets();
+			int width = maxWidth + insets.left + insets.right;
+			int height = heights.getTotal() + insets.top + insets.bottom;
+			setMeasuredSize(width, height);
+		}
+
+		@Override
+		protected void arrangeNode(Rectangle dest, LayoutContext context) {
+			Insets insets = nodeInsets();
+
+			dest.x += insets.left;
+			dest.y += insets.top;
+			dest.width -= insets.left + insets.right;
+			dest.height -= insets.top + insets.bottom;
+
+			int pw = getMeasuredWidth();
+			if (horizontalAlignment == NodeAlignment.STRETCHED) {
+				rowWidth = dest.width;
+			} else {
+				rowWidth = Math.min(dest.width, pw);
+			}
+			left = dest.x + adjustX(dest.width, pw);
+			top = dest.y;
+
+			Rectangle visible = visibleRect(dest);
+			// real heights may differ from estimated, so realized rows may
+			// not cover visible rectangle after first try
+			for (int pass = 0; pass < 3; pass++) {
+				int from = 0;
+				int to = 0;
+				if (heights.getCount() > 0 && !visible.isEmpty()) {
+					from = heights.indexAt(visible.y - overscan - top);
+					to = heights.indexAt(visible.y + visible.height + overscan - top) + 1;
+				}
+				if (!realize(from, to, context)) {
+					break;
+				}
+			}
+
+			Rectangle r = context.getChildBounds();
+			int y = top + heights.getOffset(first);
+			for (int i = 0; i < count; i++) {
+				int height = heights.getSize(first + i);
+				r.setBounds(left, y, rowWidth, height);
+				leafs[i].arrange(r, context);
+				y += height;
+			}
+
+			insets = nodeInsets();
+			if (maxWidth + insets.left + insets.right != pw
+					|| heights.getTotal() + insets.top + insets.bottom != getMeasuredHeight()) {
+				// preferred size was changed by measured rows
+				revalidateLater();
+			}
+		}
+
+		/**
+		 * Realize rows from (inclusive) to (exclusive) and release all other
+		 * rows.
+		 *
+		 * @return true if measured height of some row was changed
+		 */
+		private boolean realize(int from, int to, LayoutContext context) {
+			for (int i = 0; i < count; i++) {
+				int row = first + i;
+				if (leafs[i] != null && (row < from || row >= to)) {
+					release(leafs[i], context);
+				}
+			}
+			int n = to - from;
+			if (scratch.length < n) {
+				scratch = new LeafNode[Math.max(n, scratch.length * 2)];
+			}
+			for (int row = from; row < to; row++) {
+				int i = row - first;
+				LeafNode leaf = null;
+				if (i >= 0 && i < count) {
+					leaf = leafs[i];
+				}
+				if (leaf == null) {
+					leaf = createLeaf(row);
+				}
+				scratch[row - from] = leaf;
+			}
+			Arrays.fill(leafs, 0, count, null);
+			LeafNode[] t = leafs;
+			leafs = scratch;
+			scratch = t;
+			first = from;
+			count = n;
+
+			boolean changed = false;
+			for (int i = 0; i < count; i++) {
+				LeafNode leaf = leafs[i];
+				int height = leaf.getMeasuredHeight();
+				if (height != heights.getSize(first + i)) {
+					heights.setSize(first + i, height);
+					changed = true;
+				}
+				maxWidth = Math.max(maxWidth, leaf.getMeasuredWidth());
+			}
+			return changed;
+		}
+
+		private LeafNode createLeaf(int row) {
+			Component reuse = null;
+			if (!recycled.isEmpty()) {
+				reuse = recycled.remove(recycled.size() - 1);
+			}
+			Component c = factory.getRow(row, reuse);
+			if (reuse != null && c != reuse) {
+				recycled.add(reuse);
+			}
+			return realizeLeaf(c);
+		}
+
+		private void release(LeafNode leaf, LayoutContext context) {
+			releaseLeaf(leaf, context);
+			recycled.add(leaf.getComponent());
+		}
+
+		@Override
+		public Iterator<LayoutNode> iterator() {
+			return new Iterator<LayoutNode>() {
+				private int cursor = skipReleased(0);
+
+				@Override
+				public boolean hasNext() {
+					return cursor < count;
+				}
+
+				@Override
+				public LayoutNode next() {
+					if (cursor >= count) {
+						throw new NoSuchElementException();
+					}
+					LayoutNode leaf = leafs[cursor];
+					cursor = skipReleased(cursor + 1);
+					return leaf;
+				}
+			};
+		}
+
+		private int skipReleased(int i) {
+			while (i < count && leafs[i] == null) {
+				i++;
+			}
+			return i;
+		}
+
+		/**
+		 * Rows are created by RowFactory.
+		 */
+		@Override
+		public void add(LayoutNode layout, Object constraints) {
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * Called when component of realized row was removed from target. Row
+		 * gets new component on next layout pass.
+		 */
+		@Override
+		public void remove(LayoutNode layout) {
+			for (int i = 0; i < count; i++) {
+				if (leafs[i] == layout) {
+					leafs[i] = null;
+					detach(layout);
+					return;
+				}
+			}
+		}
+
+		/**
+		 * @return number of realized rows
+		 */
+		@Override
+		public int getCount() {
+			int n = 0;
+			for (int i = 0; i < count; i++) {
+				if (leafs[i] != null) {
+					n++;
+				}
+			}
+			return n;
+		}
+	}
+
+	/**
+	 * Grid node for large sheets. Only cells which intersect visible rectangle
+	 * of target (plus overscan) have components. Components are created by
+	 * {@link CellFactory} and recycled (within their column) when cell is
+	 * scrolled out of view, so cost of layout depends on size of viewport, not
+	 * on size of grid.
+	 * <p>
+	 * Column widths and row heights are kept in {@link TrackIndex}. Track
+	 * which was never shown has estimated size, otherwise it is as large as
+	 * largest of its measured cells. Each cell spans one column and one row,
+	 * tracks are never stretched or shrunk.
+	 *
+	 * @see VirtualPanel
+	 */
+	public static class VirtualGridNode extends LayoutNode implements VirtualNode {
+
+		private final CellFactory factory;
+		private final TrackIndex widths;
+		private final TrackIndex heights;
+		private int overscan = 100;
+
+		// realized cells, row by row (null if released)
+		private LeafNode[] leafs = new LeafNode[64];
+		private LeafNode[] scratch = new LeafNode[64];
+		private int firstRow, firstColumn;
+		private int rows, columns;
+		// recycled components of each column
+		private final ArrayList<ArrayList<Component>> recycled = new ArrayList<>();
+
+		// position of first cell in last pass
+		private int top, left;
+
+		public VirtualGridNode(String name, CellFactory factory, int rowCount, int columnCount,
+				int estimatedRowHeight, int estimatedColumnWidth) {
+			super(name);
+			this.factory = factory;
+			this.heights = new TrackIndex(rowCount, estimatedRowHeight);
+			this.widths = new TrackIndex(columnCount, estimatedColumnWidth);
+		}
+
+		public int getRowCount() {
+			return heights.getCount();
+		}
+
+		public int getColumnCount() {
+			return widths.getCount();
+		}
+
+		/**
+		 * Change number of rows. Components of removed cells are recycled.
+		 */
+		public void setRowCount(int rowCount) {
+			releaseOutside(rowCount, widths.getCount());
+			heights.setCount(rowCount);
+			invalidate();
+		}
+
+		/**
+		 * Change number of columns. Components of removed cells are recycled.
+		 */
+		public void setColumnCount(int columnCount) {
+			releaseOutside(heights.getCount(), columnCount);
+			widths.setCount(columnCount);
+			invalidate();
+		}
+
+		private void releaseOutside(int rowCount, int columnCount) {
+			for (int i = 0; i < rows * columns; i++) {
+				int row = firstRow + i / columns;
+				int column = firstColumn + i % columns;
+				if (leafs[i] != null && (row >= rowCount || column >= columnCount)) {
+					release(leafs[i], column, null);
+					leafs[i] = null;
+				}
+			}
+		}
+
+		/**
+		 * Content of given cell was changed. Cell will be measured again (its row
+		 * and column may shrink) and its component will be requested from factory
+		 * on next layout pass.
+		 */
+		public void cellChanged(int row, int column) {
+			int r = row - firstRow;
+			int c = column - firstColumn;
+			if (r >= 0 && r < rows && c >= 0 && c < columns && leafs[r * columns + c] != null) {
+				release(leafs[r * columns + c], column, null);
+				leafs[r * columns + c] = null;
+			}
+			heights.forget(row);
+			widths.forget(column);
+			invalidate();
+		}
+
+		@Override
+		public int getEstimatedRowHeight() {
+			return heights.getDefaultSize();
+		}
+
+		public int getEstimatedColumnWidth() {
+			return widths.getDefaultSize();
+		}
+
+		public int getOverscan() {
+			return overscan;
+		}
+
+		/**
+		 * @param overscan distance in pixels around of visible rectangle, where
+		 *            cells are realized too
+		 */
+		public void setOverscan(int overscan) {
+			this.overscan = overscan;
+			requestLayout();
+		}
+
+		/**
+		 * @return row at given y coordinate of target or -1
+		 */
+		@Override
+		public int getRowAt(int y) {
+			if (y < top || y >= top + heights.getTotal()) {
+				return -1;
+			}
+			return heights.indexAt(y - top);
+		}
+
+		/**
+		 * @return column at given x coordinate of target or -1
+		 */
+		public int getColumnAt(int x) {
+			if (x < left || x >= left + widths.getTotal()) {
+				return -1;
+			}
+			return widths.indexAt(x - left);
 		}
 
-		@Override
-		public boolean isLeaf() {
-			return true;
+		/**
+		 * @return bounds of given cell in target, as computed by last layout pass
+		 */
+		public Rectangle getCellBounds(int row, int column) {
+			return new Rectangle(left + widths.getOffset(column), top + heights.getOffset(row),
+					widths.getSize(column), heights.getSize(row));
 		}
 
+		/**
+		 * @return bounds of given row (all columns) in target
+		 */
 		@Override
-		public void add(LayoutNode layout, Object constraints) {
-			throw new UnsupportedOperationException();
+		public Rectangle getRowBounds(int row) {
+			return new Rectangle(left, top + heights.getOffset(row), widths.getTotal(), heights.getSize(row));
+		}
+
+		/**
+		 * @return bounds of given column (all rows) in target
+		 */
+		public Rectangle getColumnBounds(int column) {
+			return new Rectangle(left + widths.getOffset(column), top, widths.getSize(column), heights.getTotal());
 		}
 
 		@Override
-		public void layout(Rectangle dest) {
-			if (component.getParent() != container) {
-				getParent().setInvalidNode(this);
-				return;
+		protected void measureNode() {
+			measureCells();
+			Insets insets = nodeInsets();
+			int width = widths.getTotal() + insets.left + insets.right;
+			int height = heights.getTotal() + insets.top + insets.bottom;
+			setMeasuredSize(width, height);
+		}
+
+		/**
+		 * @return true if size of some track was changed
+		 */
+		private boolean measureCells() {
+			boolean changed = false;
+			for (int i = 0; i < rows * columns; i++) {
+				LeafNode leaf = leafs[i];
+				if (leaf != null) {
+					changed |= heights.grow(firstRow + i / columns, leaf.getMeasuredHeight());
+					changed |= widths.grow(firstColumn + i % columns, leaf.getMeasuredWidth());
+				}
 			}
+			return changed;
+		}
 
-			Insets insets = getNodeInsets();
+		@Override
+		protected void arrangeNode(Rectangle dest, LayoutContext context) {
+			Insets insets = nodeInsets();
 
 			dest.x += insets.left;
 			dest.y += insets.top;
 			dest.width -= insets.left + insets.right;
 			dest.height -= insets.top + insets.bottom;
 
-			int hgap = getHgap();
-			int vgap = getVgap();
-
-			if (horizontalAlignment == NodeAlignment.STRETCHED && verticalAlignment == NodeAlignment.STRETCHED) {
-				Rectangle r = new Rectangle(dest.x + hgap, dest.y + vgap, dest.width - hgap, dest.height - vgap);
-				component.setBounds(r);
-				if (isDebug()) {
-					String s = component.getName();
-					if (s != null) {
-						System.out.println(s + " " + r);
-					}
+			left = dest.x;
+			top = dest.y;
+
+			Rectangle visible = visibleRect(dest);
+			// real sizes may differ from estimated, so realized cells may not
+			// cover visible rectangle after first try
+			for (int pass = 0; pass < 3; pass++) {
+				int r0 = 0, r1 = 0, c0 = 0, c1 = 0;
+				if (heights.getCount() > 0 && widths.getCount() > 0 && !visible.isEmpty()) {
+					r0 = heights.indexAt(visible.y - overscan - top);
+					r1 = heights.indexAt(visible.y + visible.height + overscan - top) + 1;
+					c0 = widths.indexAt(visible.x - overscan - left);
+					c1 = widths.indexAt(visible.x + visible.width + overscan - left) + 1;
 				}
-			} else {
-				Dimension ps = preferredSize();
-
-				double mx = 1;
-				if (horizontalAlignment == NodeAlignment.STRETCHED) {
-					mx = dest.getWidth() / ps.getWidth();
+				realize(r0, r1, c0, c1, context);
+				if (!measureCells()) {
+					break;
 				}
+			}
 
-				double my = 1;
-				if (verticalAlignment == NodeAlignment.STRETCHED) {
-					my = dest.getHeight() / ps.getHeight();
+			Rectangle r = context.getChildBounds();
+			int x0 = left + widths.getOffset(firstColumn);
+			int y = top + heights.getOffset(firstRow);
+			for (int i = 0; i < rows; i++) {
+				int height = heights.getSize(firstRow + i);
+				int x = x0;
+				for (int j = 0; j < columns; j++) {
+					int width = widths.getSize(firstColumn + j);
+					r.setBounds(x, y, width, height);
+					leafs[i * columns + j].arrange(r, context);
+					x += width;
 				}
+				y += height;
+			}
 
-				int dx = adjustX(dest.height, ps.height);
-				int dy = adjustY(dest.width, ps.width);
-
-				int x = dest.x + dx + hgap;
-				int y = dest.y + dy + vgap;
-
-				double height = ps.height * my;
-				double width = ps.width * mx;
+			insets = nodeInsets();
+			if (widths.getTotal() + insets.left + insets.right != getMeasuredWidth()
+					|| heights.getTotal() + insets.top + insets.bottom != getMeasuredHeight()) {
+				// preferred size was changed by measured cells
+				revalidateLater();
+			}
+		}
 
-				Rectangle r = new Rectangle(x, y, (int) (width - hgap), (int) (height - vgap));
-				component.setBounds(r);
-				if (isDebug()) {
-					String s = component.getName();
-					if (s != null) {
-						System.out.println(s + " " + r);
+		/**
+		 * Realize cells in rows r0 to r1 and columns c0 to c1 (exclusive) and
+		 * release all other cells.
+		 */
+		private void realize(int r0, int r1, int c0, int c1, LayoutContext context) {
+			for (int i = 0; i < rows * columns; i++) {
+				int row = firstRow + i / columns;
+				int column = firstColumn + i % columns;
+				if (leafs[i] != null && (row < r0 || row >= r1 || column < c0 || column >= c1)) {
+					release(leafs[i], column, context);
+				}
+			}
+			int n = (r1 - r0) * (c1 - c0);
+			if (scratch.length < n) {
+				scratch = new LeafNode[Math.max(n, scratch.length * 2)];
+			}
+			int k = 0;
+			for (int row = r0; row < r1; row++) {
+				for (int column = c0; column < c1; column++) {
+					LeafNode leaf = null;
+					int i = row - firstRow;
+					int j = column - firstColumn;
+					if (i >= 0 && i < rows && j >= 0 && j < columns) {
+						leaf = leafs[i * columns + j];
 					}
+					if (leaf == null) {
+						leaf = createLeaf(row, column);
+					}
+					scratch[k++] = leaf;
 				}
 			}
+			Arrays.fill(leafs, 0, rows * columns, null);
+			LeafNode[] t = leafs;
+			leafs = scratch;
+			scratch = t;
+			firstRow = r0;
+			firstColumn = c0;
+			rows = r1 - r0;
+			columns = c1 - c0;
 		}
 
-		Component getComponent() {
-			return component;
-		}
-
-		@Override
-		public void remove(LayoutNode layout) {
-
+		private ArrayList<Component> recycled(int column) {
+			while (recycled.size() <= column) {
+				recycled.add(new ArrayList<Component>());
+			}
+			return recycled.get(column);
 		}
 
-		@Override
-		public void print(int level) {
-			System.out.println(create(level) + component);
+		private LeafNode createLeaf(int row, int column) {
+			ArrayList<Component> pool = recycled(column);
+			Component reuse = null;
+			if (!pool.isEmpty()) {
+				reuse = pool.remove(pool.size() - 1);
+			}
+			Component c = factory.getCell(row, column, reuse);
+			if (reuse != null && c != reuse) {
+				pool.add(reuse);
+			}
+			return realizeLeaf(c);
 		}
 
-		@Override
-		public int getCount() {
-			return 1;
+		private void release(LeafNode leaf, int column, LayoutContext context) {
+			releaseLeaf(leaf, context);
+			recycled(column).add(leaf.getComponent());
 		}
 
 		@Override
-		public String toString() {
-			return super.toString() + " [" + component.getName() + "]";
-		}
-	}
-
-	public static class VerticalNode extends LayoutNode {
+		public Iterator<LayoutNode> iterator() {
+			return new Iterator<LayoutNode>() {
+				private int cursor = skipReleased(0);
 
-		private ArrayList<LayoutNode> list = new ArrayList<>();
+				@Override
+				public boolean hasNext() {
+					return cursor < rows * columns;
+				}
 
-		public VerticalNode(String name) {
-			super(name);
+				@Override
+				public LayoutNode next() {
+					if (cursor >= rows * columns) {
+						throw new NoSuchElementException();
+					}
+					LayoutNode leaf = leafs[cursor];
+					cursor = skipReleased(cursor + 1);
+					return leaf;
+				}
+			};
 		}
 
-		@Override
-		public Dimension preferredSize() {
-			int height = 0;
-			int width = 0;
-			for (LayoutNode c : this) {
-				Dimension ps = c.preferredSize();
-				height += ps.height;
-				width = Math.max(width, ps.width);
+		private int skipReleased(int i) {
+			while (i < rows * columns && leafs[i] == null) {
+				i++;
 			}
-			Insets insets = getNodeInsets();
-			width += insets.left + insets.right;
-			height += insets.top + insets.bottom;
-
-			return new Dimension(width, height);
+			return i;
 		}
 
+		/**
+		 * Cells are created by CellFactory.
+		 */
 		@Override
-		public Iterator<LayoutNode> iterator() {
-			return list.iterator();
+		public void add(LayoutNode layout, Object constraints) {
+			throw new UnsupportedOperationException();
 		}
 
+		/**
+		 * Called when component of realized cell was removed from target. Cell
+		 * gets new component on next layout pass.
+		 */
 		@Override
-		public void add(LayoutNode layout, Object constraints) {
-			if (!list.contains(layout)) {
-				list.add(layout);
-				layout.parent = this;
+		public void remove(LayoutNode layout) {
+			for (int i = 0; i < rows * columns; i++) {
+				if (leafs[i] == layout) {
+					leafs[i] = null;
+					detach(layout);
+					return;
+				}
 			}
 		}
 
+		/**
+		 * @return number of realized cells
+		 */
 		@Override
-		public void layout(Rectangle dest) {
-			removeInvalidNodes();
-
-			Insets insets = getNodeInsets();
+		public int getCount() {
+			int n = 0;
+			for (int i = 0; i < rows * columns; i++) {
+				if (leafs[i] != null) {
+					n++;
+				}
+			}
+			return n;
+		}
+	}
 
-			dest.x += insets.left;
-			dest.y += insets.top;
-			dest.width -= insets.left + insets.right;
-			dest.height -= insets.top + insets.bottom;
+	/**
+	 * Layout boundary: node with fixed preferred size and one child, for
+	 * example sidebar or status bar. Preferred size of boundary doesn't depend
+	 * on its child, so changes inside of boundary (like text of clock or
+	 * progress label) never invalidate preferred size of ancestors. Only
+	 * subtree of boundary is measured and arranged again, ancestors are just
+	 * passed on the way to it and their other children are skipped.
+	 * <p>
+	 * Child fills whole boundary (minus insets).
+	 */
+	public static class BoundaryNode extends LayoutNode {
 
-			Xym xym = computeXym(dest);
+		private LayoutNode child;
+		private int fixedWidth, fixedHeight;
 
-			for (LayoutNode c : this) {
-				Dimension d = c.preferredSize();
-				double height = d.height * xym.m;
-				Rectangle r = xym.create(height);
-				c.layout(r);
-				xym.y += height;
-			}
+		public BoundaryNode(String name, int fixedWidth, int fixedHeight) {
+			super(name);
+			this.fixedWidth = fixedWidth;
+			this.fixedHeight = fixedHeight;
 		}
 
-		@Override
-		public void paintBorder(Graphics g, Rectangle dest) {
-			super.paintBorder(g, dest);
+		public int getFixedWidth() {
+			return fixedWidth;
+		}
 
-			Xym xym = computeXym(dest);
+		public int getFixedHeight() {
+			return fixedHeight;
+		}
 
-			for (LayoutNode c : this) {
-				Dimension d = c.preferredSize();
-				double height = d.height * xym.m;
-				Rectangle r = xym.create(height);
-				c.paintBorder(g, r);
-				xym.y += height;
+		/**
+		 * Change size of boundary. This is the only change of boundary which
+		 * invalidates its ancestors.
+		 */
+		public void setFixedSize(int fixedWidth, int fixedHeight) {
+			this.fixedWidth = fixedWidth;
+			this.fixedHeight = fixedHeight;
+			invalidateStructure();
+			if (getParent() != null) {
+				getParent().invalidate();
 			}
 		}
 
 		@Override
-		public void paintNode(Graphics g, Rectangle dest) {
-			super.paintNode(g, dest);
-
-			Xym xym = computeXym(dest);
-
-			for (LayoutNode c : this) {
-				Dimension d = c.preferredSize();
-				double height = d.height * xym.m;
-				Rectangle r = xym.create(height);
-				c.paintNode(g, r);
-				xym.y += height;
+		protected void measureNode() {
+			if (child != null) {
+				child.measure();
 			}
+			setMeasuredSize(fixedWidth, fixedHeight);
 		}
 
-		private Xym computeXym(Rectangle dest) {
-			Dimension ps = preferredSize();
-			int width;
-			if (horizontalAlignment == NodeAlignment.STRETCHED) {
-				width = dest.width;
-			} else {
-				width = Math.min(dest.width, ps.width);
+		@Override
+		protected void arrangeNode(Rectangle dest, LayoutContext context) {
+			if (child != null) {
+				Insets insets = nodeInsets();
+				dest.x += insets.left;
+				dest.y += insets.top;
+				dest.width -= insets.left + insets.right;
+				dest.height -= insets.top + insets.bottom;
+				child.arrange(dest, context);
 			}
+		}
 
-			float m = 1f;
-
-			if (dest.height < ps.height || verticalAlignment == NodeAlignment.STRETCHED) {
-				m = (float) (dest.getHeight() / ps.getHeight());
+		@Override
+		public Iterator<LayoutNode> iterator() {
+			if (child == null) {
+				return new EmptyIterator<>();
 			}
+			return new Iterator<LayoutNode>() {
+				private LayoutNode next = child;
 
-			int dx = adjustX(dest.width, ps.width);
-			int dy = adjustY(dest.height, ps.height);
-
-			int x = dest.x + dx;
-			int y = dest.y + dy;
-
-			Xym xym = new Xym();
-			xym.x = x;
-			xym.y = y;
-			xym.m = m;
-			xym.width = width;
+				@Override
+				public boolean hasNext() {
+					return next != null;
+				}
 
-			return xym;
+				@Override
+				public LayoutNode next() {
+					if (next == null) {
+						throw new NoSuchElementException();
+					}
+					LayoutNode node = next;
+					next = null;
+					return node;
+				}
+			};
 		}
 
-		static class Xym {
-
-			float m;
-			int x, y, width;
-
-			Rectangle create(double height) {
-				return new Rectangle(x, y, width, (int) (height));
+		/**
+		 * Set child of boundary. Previous child is removed.
+		 */
+		@Override
+		public void add(LayoutNode layout, Object constraints) {
+			if (child == layout) {
+				return;
 			}
+			if (child != null) {
+				remove(child);
+			}
+			adopt(layout);
+			child = layout;
+			attach(layout);
 		}
 
 		@Override
 		public void remove(LayoutNode layout) {
-			list.remove(layout);
+			if (child == layout) {
+				child = null;
+				detach(layout);
+			}
 		}
 
 		@Override
 		public int getCount() {
-			return list.size();
+			return child != null ? 1 : 0;
 		}
 	}
 
 	public static class HorizontalNode extends LayoutNode {
 
-		private ArrayList<LayoutNode> list = new ArrayList<>();
+		private final NodeList list = new NodeList(this);
 
 		public HorizontalNode(String name) {
 			super(name);
 		}
 
 		@Override
-		public Dimension preferredSize() {
+		protected void measureNode() {
 			int height = 0;
 			int width = 0;
-			for (LayoutNode c : this) {
-				Dimension ps = c.preferredSize();
-				width += ps.width;
-				height = Math.max(height, ps.height);
+			for (int i = 0; i < list.size(); i++) {
+				LayoutNode c = list.get(i);
+				width += c.getMeasuredWidth();
+				height = Math.max(height, c.getMeasuredHeight());
 			}
-			Insets insets = getNodeInsets();
+			Insets insets = nodeInsets();
 			width += insets.left + insets.right;
 			height += insets.top + insets.bottom;
 
-			return new Dimension(width, height);
+			setMeasuredSize(width, height);
 		}
 
 		@Override
@@ -662,49 +2006,48 @@ public abstract class LayoutNode implements Iterable<LayoutNode> {
 
 		@Override
 		public void add(LayoutNode layout, Object constraints) {
-			if (!list.contains(layout)) {
-				list.add(layout);
-				layout.parent = this;
+			adopt(layout);
+			if (list.add(layout)) {
+				attach(layout);
 			}
 		}
 
 		@Override
-		public void layout(Rectangle dest) {
-			removeInvalidNodes();
-
-			Insets insets = getNodeInsets();
+		protected void arrangeNode(Rectangle dest, LayoutContext context) {
+			Insets insets = nodeInsets();
 
 			dest.x += insets.left;
 			dest.y += insets.top;
 			dest.width -= insets.left + insets.right;
 			dest.height -= insets.top + insets.bottom;
 
-			Dimension ps = preferredSize();
+			int pw = getMeasuredWidth();
+			int ph = getMeasuredHeight();
 			int height;
 			if (verticalAlignment == NodeAlignment.STRETCHED) {
 				height = dest.height;
 			} else {
-				height = Math.min(dest.height, ps.height);
+				height = Math.min(dest.height, ph);
 			}
 
 			double m = 1;
 
-			if (dest.width < ps.width || horizontalAlignment == NodeAlignment.STRETCHED) {
-				m = dest.getWidth() / ps.getWidth();
+			if (dest.width < pw || horizontalAlignment == NodeAlignment.STRETCHED) {
+				m = dest.getWidth() / pw;
 			}
 
-			int dx = adjustX(dest.width, ps.width);
-			int dy = adjustY(dest.height, ps.height);
+			int dx = adjustX(dest.width, pw);
+			int dy = adjustY(dest.height, ph);
 
 			int x = dest.x + dx;
 			int y = dest.y + dy;
 
-			for (LayoutNode c : this) {
-				Dimension d = c.preferredSize();
-				double width = d.width * m;
-				Rectangle bounds = new Rectangle();
+			Rectangle bounds = context.getChildBounds();
+			for (int i = 0; i < list.size(); i++) {
+				LayoutNode c = list.get(i);
+				double width = c.getMeasuredWidth() * m;
 				bounds.setRect(x, y, width, height);
-				c.layout(bounds);
+				c.arrange(bounds, context);
 				x += width;
 			}
 		}
@@ -713,29 +2056,29 @@ public abstract class LayoutNode implements Iterable<LayoutNode> {
 		public void paintBorder(Graphics g, Rectangle dest) {
 			super.paintBorder(g, dest);
 
-			Dimension ps = preferredSize();
+			int pw = getMeasuredWidth();
+			int ph = getMeasuredHeight();
 			int height;
 			if (verticalAlignment == NodeAlignment.STRETCHED) {
 				height = dest.height;
 			} else {
-				height = Math.min(dest.height, ps.height);
+				height = Math.min(dest.height, ph);
 			}
 
 			double m = 1;
 
-			if (dest.width < ps.width || horizontalAlignment == NodeAlignment.STRETCHED) {
-				m = dest.getWidth() / ps.getWidth();
+			if (dest.width < pw || horizontalAlignment == NodeAlignment.STRETCHED) {
+				m = dest.getWidth() / pw;
 			}
 
-			int dx = adjustX(dest.width, ps.width);
-			int dy = adjustY(dest.height, ps.height);
+			int dx = adjustX(dest.width, pw);
+			int dy = adjustY(dest.height, ph);
 
 			int x = dest.x + dx;
 			int y = dest.y + dy;
 
 			for (LayoutNode c : this) {
-				Dimension d = c.preferredSize();
-				double width = d.width * m;
+				double width = c.getMeasuredWidth() * m;
 				Rectangle bounds = new Rectangle();
 				bounds.setRect(x, y, width, height);
 				c.paintBorder(g, bounds);
@@ -747,29 +2090,29 @@ public abstract class LayoutNode implements Iterable<LayoutNode> {
 		public void paintNode(Graphics g, Rectangle dest) {
 			super.paintNode(g, dest);
 
-			Dimension ps = preferredSize();
+			int pw = getMeasuredWidth();
+			int ph = getMeasuredHeight();
 			int height;
 			if (verticalAlignment == NodeAlignment.STRETCHED) {
 				height = dest.height;
 			} else {
-				height = Math.min(dest.height, ps.height);
+				height = Math.min(dest.height, ph);
 			}
 
 			double m = 1;
 
-			if (dest.width < ps.width || horizontalAlignment == NodeAlignment.STRETCHED) {
-				m = dest.getWidth() / ps.getWidth();
+			if (dest.width < pw || horizontalAlignment == NodeAlignment.STRETCHED) {
+				m = dest.getWidth() / pw;
 			}
 
-			int dx = adjustX(dest.width, ps.width);
-			int dy = adjustY(dest.height, ps.height);
+			int dx = adjustX(dest.width, pw);
+			int dy = adjustY(dest.height, ph);
 
 			int x = dest.x + dx;
 			int y = dest.y + dy;
 
 			for (LayoutNode c : this) {
-				Dimension d = c.preferredSize();
-				double width = d.width * m;
+				double width = c.getMeasuredWidth() * m;
 				Rectangle bounds = new Rectangle();
 				bounds.setRect(x, y, width, height);
 				c.paintNode(g, bounds);
@@ -779,7 +2122,9 @@ public abstract class LayoutNode implements Iterable<LayoutNode> {
 
 		@Override
 		public void remove(LayoutNode layout) {
-			list.remove(layout);
+			if (list.remove(layout)) {
+				detach(layout);
+			}
 		}
 
 		@Override
@@ -790,7 +2135,15 @@ public abstract class LayoutNode implements Iterable<LayoutNode> {
 
 	public static class RectNode extends LayoutNode {
 
-		private HashMap<LayoutNode, Rectangle2D> map = new HashMap<>();
+		// x, y, width and height of each child, indexed by slot
+		private double[] bounds = new double[8 * 4];
+
+		private final NodeList list = new NodeList(this) {
+			@Override
+			protected void moved(int from, int to) {
+				System.arraycopy(bounds, from * 4, bounds, to * 4, 4);
+			}
+		};
 
 		public RectNode(String name) {
 			super(name);
@@ -798,28 +2151,26 @@ public abstract class LayoutNode implements Iterable<LayoutNode> {
 
 		@Override
 		public Iterator<LayoutNode> iterator() {
-			return map.keySet().iterator();
+			return list.iterator();
 		}
 
 		@Override
-		public Dimension preferredSize() {
+		protected void measureNode() {
 			double width = 0;
 			double height = 0;
-			for (LayoutNode n : this) {
-				Dimension ps = n.preferredSize();
-				Rectangle2D r = map.get(n);
-				double w = ps.width / r.getWidth();
-				double h = ps.height / r.getHeight();
+			for (int i = 0; i < list.size(); i++) {
+				LayoutNode n = list.get(i);
+				double w = n.getMeasuredWidth() / bounds[i * 4 + 2];
+				double h = n.getMeasuredHeight() / bounds[i * 4 + 3];
 				width = Math.max(w, width);
 				height = Math.max(h, height);
 			}
-			Insets insets = getNodeInsets();
+			Insets insets = nodeInsets();
 			width += insets.left + insets.right;
 			height += insets.top + insets.bottom;
 
-			Dimension res = new Dimension();
-			res.setSize(width, height);
-			return res;
+			// same rounding as Dimension.setSize(double, double)
+			setMeasuredSize((int) Math.ceil(width), (int) Math.ceil(height));
 		}
 
 		private void checkRange(double... nn) {
@@ -837,38 +2188,48 @@ public abstract class LayoutNode implements Iterable<LayoutNode> {
 				r = new Rectangle2D.Double(0, 0, 1, 1);
 			}
 			checkRange(r.getX(), r.getY(), r.getX() + r.getWidth(), r.getY() + r.getHeight());
-			map.put(layout, r);
-			layout.parent = this;
+			adopt(layout);
+			list.add(layout);
+			int i = layout.slot * 4;
+			if (i + 4 > bounds.length) {
+				bounds = Arrays.copyOf(bounds, Math.max(i + 4, bounds.length * 2));
+			}
+			bounds[i] = r.getX();
+			bounds[i + 1] = r.getY();
+			bounds[i + 2] = r.getWidth();
+			bounds[i + 3] = r.getHeight();
+			attach(layout);
 		}
 
 		@Override
 		public void remove(LayoutNode layout) {
-			map.remove(layout);
+			if (list.remove(layout)) {
+				detach(layout);
+			}
 		}
 
 		@Override
-		public void layout(Rectangle dest) {
-			removeInvalidNodes();
-
-			Insets insets = getNodeInsets();
+		protected void arrangeNode(Rectangle dest, LayoutContext context) {
+			Insets insets = nodeInsets();
 
 			dest.x += insets.left;
 			dest.y += insets.top;
 			dest.width -= insets.left + insets.right;
 			dest.height -= insets.top + insets.bottom;
 
-			for (LayoutNode n : this) {
-				Rectangle2D r = map.get(n);
-				int width = dest.width;
-				int height = dest.height;
-
-				int x = (int) (width * r.getX());
-				int y = (int) (height * r.getY());
-				int w = (int) (width * r.getWidth());
-				int h = (int) (height * r.getHeight());
-
-				Rectangle bounds = new Rectangle(dest.x + x, dest.y + y, w, h);
-				n.layout(bounds);
+			Rectangle r = context.getChildBounds();
+			if (context.isParallel(this)) {
+				LayoutContext.Forks forks = context.forks(list.size());
+				for (int i = 0; i < list.size(); i++) {
+					forks.add(list.get(i), childBounds(i, dest, r));
+				}
+				forks.join();
+				return;
+			}
+			for (int i = 0; i < list.size(); i++) {
+				LayoutNode n = list.get(i);
+				childBounds(i, dest, r);
+				n.arrange(r, context);
 			}
 		}
 
@@ -876,44 +2237,45 @@ public abstract class LayoutNode implements Iterable<LayoutNode> {
 		public void paintBorder(Graphics g, Rectangle dest) {
 			super.paintBorder(g, dest);
 
-			for (LayoutNode n : this) {
-				Rectangle2D r = map.get(n);
-				int width = dest.width;
-				int height = dest.height;
-
-				int x = (int) (width * r.getX());
-				int y = (int) (height * r.getY());
-				int w = (int) (width * r.getWidth());
-				int h = (int) (height * r.getHeight());
-
-				Rectangle bounds = new Rectangle(dest.x + x, dest.y + y, w, h);
-
-				n.paintBorder(g, bounds);
+			for (int i = 0; i < list.size(); i++) {
+				LayoutNode n = list.get(i);
+				n.paintBorder(g, childBounds(i, dest, new Rectangle()));
 			}
 		}
 
 		@Override
 		public void paintNode(Graphics g, Rectangle dest) {
 			super.paintNode(g, dest);
-			for (LayoutNode n : this) {
-				Rectangle2D r = map.get(n);
-				int width = dest.width;
-				int height = dest.height;
+			for (int i = 0; i < list.size(); i++) {
+				LayoutNode n = list.get(i);
+				n.paintNode(g, childBounds(i, dest, new Rectangle()));
+			}
+		}
 
-				int x = (int) (width * r.getX());
-				int y = (int) (height * r.getY());
-				int w = (int) (width * r.getWidth());
-				int h = (int) (height * r.getHeight());
+		private Rectangle childBounds(int i, Rectangle dest, Rectangle r) {
+			int width = dest.width;
+			int height = dest.height;
 
-				Rectangle bounds = new Rectangle(dest.x + x, dest.y + y, w, h);
+			int x = (int) (width * bounds[i * 4]);
+			int y = (int) (height * bounds[i * 4 + 1]);
+			int w = (int) (width * bounds[i * 4 + 2]);
+			int h = (int) (height * bounds[i * 4 + 3]);
 
-				n.paintNode(g, bounds);
-			}
+			r.setBounds(dest.x + x, dest.y + y, w, h);
+			return r;
 		}
 
 		@Override
 		public int getCount() {
-			return map.size();
+			return list.size();
+		}
+
+		Rectangle2D getConstraints(LayoutNode child) {
+			if (!list.contains(child)) {
+				return null;
+			}
+			int i = child.slot * 4;
+			return new Rectangle2D.Double(bounds[i], bounds[i + 1], bounds[i + 2], bounds[i + 3]);
 		}
 	}
 
@@ -921,7 +2283,17 @@ public abstract class LayoutNode implements Iterable<LayoutNode> {
 
 		private GridModel gridModel = new GridModel();
 
-		private HashMap<LayoutNode, Rectangle> map = new HashMap<>();
+		// x, y, width and height (in cells) of each child, indexed by slot
+		private int[] cells = new int[8 * 4];
+
+		private final NodeList list = new NodeList(this) {
+			@Override
+			protected void moved(int from, int to) {
+				System.arraycopy(cells, from * 4, cells, to * 4, 4);
+			}
+		};
+
+		private final Rectangle gridBounds = new Rectangle();
 
 		public GridNode(String name) {
 			super(name);
@@ -929,71 +2301,88 @@ public abstract class LayoutNode implements Iterable<LayoutNode> {
 
 		@Override
 		public Iterator<LayoutNode> iterator() {
-			return map.keySet().iterator();
+			return list.iterator();
 		}
 
 		@Override
-		public Dimension preferredSize() {
-			Rectangle r = getGridBounds();
+		protected void measureNode() {
+			Rectangle r = updateGridBounds();
 			gridModel.setGridHeight(r.height + 1);
 			gridModel.setGridWidth(r.width + 1);
 
 			updateCellSizes();
+			gridModel.updateTracks();
 
 			int width = 0;
 			int height = 0;
 
 			for (int x = r.x; x < r.x + r.width; x++) {
-				Dimension cs = gridModel.getCellSize(x, 0);
-				width += cs.width;
+				width += gridModel.getTrackWidth(x);
 			}
 
 			for (int y = r.y; y < r.y + r.height; y++) {
-				Dimension cs = gridModel.getCellSize(0, y);
-				height += cs.height;
+				height += gridModel.getTrackHeight(y);
 			}
 
-			Insets insets = getNodeInsets();
+			Insets insets = nodeInsets();
 			width += insets.left + insets.right;
 			height += insets.top + insets.bottom;
 
-			Dimension d = new Dimension(width, height);
-			return d;
+			setMeasuredSize(width, height);
 		}
 
+		/**
+		 * Each child is processed once per axis: its size is divided by number
+		 * of columns (rows) it spans and every spanned column (row) gets at
+		 * least that size.
+		 */
 		private void updateCellSizes() {
-			double width = 0;
-			double height = 0;
-			for (LayoutNode gl : this) {
-				Rectangle r = map.get(gl);
-				Rectangle2D cs = cellSize(gl, r);
-
-				for (int x = r.x; x < r.x + r.width; x++) {
-					for (int y = r.y; y < r.y + r.height; y++) {
-						gridModel.setCellSize(x, y, (int) cs.getWidth(), (int) cs.getHeight());
-					}
+			for (int i = 0; i < list.size(); i++) {
+				LayoutNode gl = list.get(i);
+				// measure also children without cells, so arrange pass (which
+				// may run in parallel) never has to measure
+				gl.measure();
+				int x = cells[i * 4];
+				int y = cells[i * 4 + 1];
+				int w = cells[i * 4 + 2];
+				int h = cells[i * 4 + 3];
+				if (w <= 0 || h <= 0) {
+					continue;
 				}
-
-				width = Math.max(width, cs.getWidth());
-				height = Math.max(height, cs.getHeight());
+				gridModel.setColumnWidth(x, w, (int) (gl.getMeasuredWidth() / (double) w));
+				gridModel.setRowHeight(y, h, (int) (gl.getMeasuredHeight() / (double) h));
 			}
 		}
 
 		public Rectangle getGridBounds() {
-			Rectangle res = new Rectangle();
-			for (LayoutNode gl : this) {
-				Rectangle r = map.get(gl);
-				res = res.union(r);
+			return new Rectangle(updateGridBounds());
+		}
+
+		/**
+		 * Compute union of all cells (and of grid origin), same as
+		 * Rectangle.union, but without allocations.
+		 */
+		private Rectangle updateGridBounds() {
+			int x1 = 0;
+			int y1 = 0;
+			int x2 = 0;
+			int y2 = 0;
+			list.compact();
+			for (int i = 0; i < list.size() * 4; i += 4) {
+				int x = cells[i];
+				int y = cells[i + 1];
+				int w = cells[i + 2];
+				int h = cells[i + 3];
+				if (w < 0 || h < 0) {
+					continue;
+				}
+				x1 = Math.min(x1, x);
+				y1 = Math.min(y1, y);
+				x2 = Math.max(x2, x + w);
+				y2 = Math.max(y2, y + h);
 			}
-			return res;
-		}
-
-		private Rectangle2D cellSize(LayoutNode gl, Rectangle r) {
-			Dimension ps = gl.preferredSize();
-			double w = ps.getWidth() / r.getWidth();
-			double h = ps.getHeight() / r.getHeight();
-
-			return new Rectangle2D.Double(0, 0, w, h);
+			gridBounds.setBounds(x1, y1, x2 - x1, y2 - y1);
+			return gridBounds;
 		}
 
 		@Override
@@ -1005,49 +2394,72 @@ public abstract class LayoutNode implements Iterable<LayoutNode> {
 				System.out.println("add: " + node + " " + constraints);
 			}
 			Rectangle r = (Rectangle) constraints;
-			map.put(node, r);
-			node.parent = this;
+			adopt(node);
+			list.add(node);
+			int i = node.slot * 4;
+			if (i + 4 > cells.length) {
+				cells = Arrays.copyOf(cells, Math.max(i + 4, cells.length * 2));
+			}
+			cells[i] = r.x;
+			cells[i + 1] = r.y;
+			cells[i + 2] = r.width;
+			cells[i + 3] = r.height;
+			attach(node);
 		}
 
 		@Override
-		public void layout(Rectangle dest) {
+		protected void arrangeNode(Rectangle dest, LayoutContext context) {
 			if (isDebug()) {
 				System.out.print("");
 			}
-			removeInvalidNodes();
-
-			Dimension preferredSize = preferredSize();
+			int pw = getMeasuredWidth();
+			int ph = getMeasuredHeight();
 
 			double mx = 1;
 			if (horizontalAlignment == NodeAlignment.STRETCHED) {
-				mx = dest.getWidth() / preferredSize.getWidth();
+				mx = dest.getWidth() / pw;
 			}
 
 			double my = 1;
 			if (verticalAlignment == NodeAlignment.STRETCHED) {
-				my = dest.getHeight() / preferredSize.getHeight();
+				my = dest.getHeight() / ph;
 			}
 
-			int dx = adjustX(dest.width - dest.x, preferredSize.width);
-			int dy = adjustY(dest.height - dest.y, preferredSize.height);
+			int dx = adjustX(dest.width - dest.x, pw);
+			int dy = adjustY(dest.height - dest.y, ph);
 
-			Insets insets = getNodeInsets();
+			Insets insets = nodeInsets();
 
 			dest.x += insets.left;
 			dest.y += insets.top;
 			dest.width -= insets.left + insets.right;
 			dest.height -= insets.top + insets.bottom;
 
-			for (LayoutNode gl : this) {
-				Rectangle r = map.get(gl);
-				int x = getXOffset(0, r.x, mx) + dx;
-				double width = getXOffset(r.x, r.x + r.width, mx);
-				int y = getYOffset(0, r.y, my) + dy;
-				double height = getYOffset(r.y, r.y + r.height, my);
-
-				Rectangle bounds = new Rectangle();
-				bounds.setRect(dest.x + x, dest.y + y, width, height);
-				gl.layout(bounds);
+			gridModel.updateOffsets(mx);
+
+			Rectangle bounds = context.getChildBounds();
+			LayoutContext.Forks forks = null;
+			if (context.isParallel(this)) {
+				forks = context.forks(list.size());
+			}
+			for (int i = 0; i < list.size(); i++) {
+				LayoutNode gl = list.get(i);
+				int cx = cells[i * 4];
+				int cy = cells[i * 4 + 1];
+				int x = gridModel.getXOffset(cx);
+				int width = gridModel.getXOffset(cx + cells[i * 4 + 2]) - x;
+				int y = gridModel.getYOffset(cy);
+				int height = gridModel.getYOffset(cy + cells[i * 4 + 3]) - y;
+
+				bounds.setBounds(dest.x + x + dx, dest.y + y + dy, width, height);
+				if (forks != null) {
+					forks.add(gl, bounds);
+				} else {
+					gl.arrange(bounds, context);
+				}
+			}
+			if (forks != null) {
+				forks.join();
 			}
 		}
 
@@ -1055,19 +2467,20 @@ public abstract class LayoutNode implements Iterable<LayoutNode> {
 		public void paintBorder(Graphics g, Rectangle dest) {
 			super.paintBorder(g, dest);
 
-			Dimension preferredSize = preferredSize();
+			int pw = getMeasuredWidth();
+			int ph = getMeasuredHeight();
 
 			double mx = 1;
 			if (horizontalAlignment == NodeAlignment.STRETCHED) {
-				mx = dest.getWidth() / preferredSize.getWidth();
+				mx = dest.getWidth() / pw;
 			}
 			double my = 1;
 			if (verticalAlignment == NodeAlignment.STRETCHED) {
-				my = dest.getHeight() / preferredSize.getHeight();
+				my = dest.getHeight() / ph;
 			}
 
-			int dx = adjustX(dest.width - dest.x, preferredSize.width);
-			int dy = adjustY(dest.height - dest.y, preferredSize.height);
+			int dx = adjustX(dest.width - dest.x, pw);
+			int dy = adjustY(dest.height - dest.y, ph);
 
 			Insets insets = getNodeInsets();
 
@@ -1076,12 +2489,16 @@ public abstract class LayoutNode implements Iterable<LayoutNode> {
 			dest.width -= insets.left + insets.right;
 			dest.height -= insets.top + insets.bottom;
 
-			for (LayoutNode gl : this) {
-				Rectangle r = map.get(gl);
-				int x = getXOffset(0, r.x, mx) + dx;
-				double width = getXOffset(r.x, r.x + r.width, mx);
-				int y = getYOffset(0, r.y, my) + dy;
-				double height = getYOffset(r.y, r.y + r.height, my);
+			for (int i = 0; i < list.size(); i++) {
+				LayoutNode gl = list.get(i);
+				int cx = cells[i * 4];
+				int cy = cells[i * 4 + 1];
+				int cw = cells[i * 4 + 2];
+				int ch = cells[i * 4 + 3];
+				int x = getXOffset(0, cx, mx) + dx;
+				double width = getXOffset(cx, cx + cw, mx);
+				int y = getYOffset(0, cy, my) + dy;
+				double height = getYOffset(cy, cy + ch, my);
 
 				Rectangle bounds = new Rectangle();
 				bounds.setRect(dest.x + x, dest.y + y, width, height);
@@ -1098,6 +2515,7 @@ public abstract class LayoutNode implements Iterable<LayoutNode> {
 			if (gridModel.minCellWidth > maxCellWidth) {
 				gridModel.minCellWidth = maxCellWidth;
 			}
+			invalidateStructure();
 		}
 
 		public int getMinCellWidth() {
@@ -1109,6 +2527,7 @@ public abstract class LayoutNode implements Iterable<LayoutNode> {
 			if (gridModel.maxCellWidth < minCellWidth) {
 				gridModel.maxCellWidth = minCellWidth;
 			}
+			invalidateStructure();
 		}
 
 		public int getMaxCellHeight() {
@@ -1117,18 +2536,22 @@ public abstract class LayoutNode implements Iterable<LayoutNode> {
 
 		public void setMaxCellWidth(int x, int max) {
 			gridModel.setMaxCellWidth(x, max);
+			invalidateStructure();
 		}
 
 		public void setMinCellWidth(int x, int min) {
 			gridModel.setMinCellWidth(x, min);
+			invalidateStructure();
 		}
 
 		public void setMaxCellHeight(int y, int max) {
 			gridModel.setMaxCellHeight(y, max);
+			invalidateStructure();
 		}
 
 		public void setMinCellHeight(int y, int min) {
 			gridModel.setMinCellHeight(y, min);
+			invalidateStructure();
 		}
 
 		public void setMaxCellHeight(int maxCellHeight) {
@@ -1136,6 +2559,7 @@ public abstract class LayoutNode implements Iterable<LayoutNode> {
 			if (gridModel.minCellHeight > maxCellHeight) {
 				gridModel.minCellHeight = maxCellHeight;
 			}
+			invalidateStructure();
 		}
 
 		public int getMinCellHeight() {
@@ -1147,25 +2571,27 @@ public abstract class LayoutNode implements Iterable<LayoutNode> {
 			if (gridModel.maxCellHeight < minCellHeight) {
 				gridModel.maxCellHeight = minCellHeight;
 			}
+			invalidateStructure();
 		}
 
 		@Override
 		public void paintNode(Graphics g, Rectangle dest) {
 			super.paintNode(g, dest);
 
-			Dimension preferredSize = preferredSize();
+			int pw = getMeasuredWidth();
+			int ph = getMeasuredHeight();
 
 			double mx = 1;
 			if (horizontalAlignment == NodeAlignment.STRETCHED) {
-				mx = dest.getWidth() / preferredSize.getWidth();
+				mx = dest.getWidth() / pw;
 			}
 			double my = 1;
 			if (verticalAlignment == NodeAlignment.STRETCHED) {
-				my = dest.getHeight() / preferredSize.getHeight();
+				my = dest.getHeight() / ph;
 			}
 
-			int dx = adjustX(dest.width - dest.x, preferredSize.width);
-			int dy = adjustY(dest.height - dest.y, preferredSize.height);
+			int dx = adjustX(dest.width - dest.x, pw);
+			int dy = adjustY(dest.height - dest.y, ph);
 
 			Insets insets = getNodeInsets();
 
@@ -1174,12 +2600,16 @@ public abstract class LayoutNode implements Iterable<LayoutNode> {
 			dest.width -= insets.left + insets.right;
 			dest.height -= insets.top + insets.bottom;
 
-			for (LayoutNode gl : this) {
-				Rectangle r = map.get(gl);
-				int x = getXOffset(0, r.x, mx) + dx;
-				double width = getXOffset(r.x, r.x + r.width, mx);
-				int y = getYOffset(0, r.y, my) + dy;
-				double height = getYOffset(r.y, r.y + r.height, my);
+			for (int i = 0; i < list.size(); i++) {
+				LayoutNode gl = list.get(i);
+				int cx = cells[i * 4];
+				int cy = cells[i * 4 + 1];
+				int cw = cells[i * 4 + 2];
+				int ch = cells[i * 4 + 3];
+				int x = getXOffset(0, cx, mx) + dx;
+				double width = getXOffset(cx, cx + cw, mx);
+				int y = getYOffset(0, cy, my) + dy;
+				double height = getYOffset(cy, cy + ch, my);
 
 				Rectangle bounds = new Rectangle();
 				bounds.setRect(dest.x + x, dest.y + y, width, height);
@@ -1187,56 +2617,90 @@ public abstract class LayoutNode implements Iterable<LayoutNode> {
 			}
 		}
 
+		Rectangle getConstraints(LayoutNode child) {
+			if (!list.contains(child)) {
+				return null;
+			}
+			int i = child.slot * 4;
+			return new Rectangle(cells[i], cells[i + 1], cells[i + 2], cells[i + 3]);
+		}
+
+		int getMinCellWidth(int x) {
+			return gridModel.getMinCellWidth(x);
+		}
+
+		int getMaxCellWidth(int x) {
+			return gridModel.getMaxCellWidth(x);
+		}
+
+		int getMinCellHeight(int y) {
+			return gridModel.getMinCellHeight(y);
+		}
+
+		int getMaxCellHeight(int y) {
+			return gridModel.getMaxCellHeight(y);
+		}
+
 		public void printNodes() {
 			for (LayoutNode node : this) {
-				System.out.println(node + " " + map.get(node));
+				System.out.println(node + " " + getConstraints(node));
 			}
 		}
 
 		public int getXOffset(int from, int to, double d) {
-			int width = 0;
-
-			for (int x = from; x < to; x++) {
-				double w = gridModel.getCellSize(x, 0).width * d;
-				int max = gridModel.getMaxCellWidth(x);
-				int min = gridModel.getMinCellWidth(x);
-				width += Math.min(Math.max(w, min), max);
-			}
-			return width;
+			measure();
+			gridModel.updateOffsets(d);
+			return gridModel.getXOffset(to) - gridModel.getXOffset(from);
 		}
 
 		public int getYOffset(int from, int to, double d) {
-			int height = 0;
-			for (int y = from; y < to; y++) {
-				int h = gridModel.getCellSize(0, y).height;
-				int max = gridModel.getMaxCellHeight(y);
-				int min = gridModel.getMinCellHeight(y);
-				height += Math.min(Math.max(h, min), max);
-			}
-			return height;
+			measure();
+			gridModel.updateOffsets(d);
+			return gridModel.getYOffset(to) - gridModel.getYOffset(from);
 		}
 
 		@Override
 		public void remove(LayoutNode layout) {
-			map.remove(layout);
+			if (list.remove(layout)) {
+				detach(layout);
+			}
 		}
 
 		@Override
 		public int getCount() {
-			return map.size();
+			return list.size();
 		}
 	}
 
+	/**
+	 * Column widths and row heights of GridNode. Track sizes (clamped to
+	 * min/max values) are computed once by measure pass. Offsets of tracks are
+	 * kept as prefix sums, so offset and span of each cell are just two array
+	 * reads.
+	 */
 	private class GridModel {
 
-		private int[] cellWidth;
-		private int[] cellHeight;
+		// marks min/max values which are not set for column or row
+		private static final int UNSET = Integer.MIN_VALUE;
 
-		private Integer[] minCellWidths;
-		private Integer[] minCellHeights;
+		private int[] cellWidth = new int[0];
+		private int[] cellHeight = new int[0];
 
-		private Integer[] maxCellWidths;
-		private Integer[] maxCellHeights;
+		// clamped column widths and row heights
+		private int[] trackWidth = new int[0];
+		private int[] trackHeight = new int[0];
+
+		// xOffsets[i] is sum of (scaled) widths of columns 0..i-1
+		private int[] xOffsets = new int[1];
+		private int[] yOffsets = new int[1];
+		private double xOffsetsScale = Double.NaN;
+		private boolean yOffsetsValid;
+
+		private int[] minCellWidths = new int[0];
+		private int[] minCellHeights = new int[0];
+
+		private int[] maxCellWidths = new int[0];
+		private int[] maxCellHeights = new int[0];
 
 		private int minCellWidth = 0;
 		private int minCellHeight = 0;
@@ -1247,7 +2711,7 @@ public abstract class LayoutNode implements Iterable<LayoutNode> {
 		int getFixedWidthSum() {
 			int sum = 0;
 			for (int x = 0; x < maxCellWidths.length; x++) {
-				if (maxCellWidths[x] != null) {
+				if (maxCellWidths[x] != UNSET) {
 					sum += maxCellWidths[x];
 				}
 			}
@@ -1256,125 +2720,175 @@ public abstract class LayoutNode implements Iterable<LayoutNode> {
 
 		int getFixedHeightsSum() {
 			int sum = 0;
-			for (int y = 0; y > maxCellHeights.length; y++) {
-				if (maxCellHeights[y] != null) {
+			for (int y = 0; y < maxCellHeights.length; y++) {
+				if (maxCellHeights[y] != UNSET) {
 					sum += maxCellHeights[y];
 				}
 			}
 			return sum;
 		}
 
-		void setMinCellWidth(int x, int min) {
-			if (this.minCellWidths == null) {
-				this.minCellWidths = new Integer[x + 1];
+		private int[] ensureSize(int[] a, int size) {
+			if (a.length >= size) {
+				return a;
 			}
-			if (this.minCellWidths.length <= x) {
-				this.minCellWidths = Arrays.copyOf(this.minCellWidths, x + 5);
-			}
-			this.minCellWidths[x] = min;
+			int length = a.length;
+			a = Arrays.copyOf(a, size);
+			Arrays.fill(a, length, size, UNSET);
+			return a;
 		}
 
-		void setMaxCellWidth(int x, int min) {
-			if (this.maxCellWidths == null) {
-				this.maxCellWidths = new Integer[x + 1];
-			}
-			if (this.maxCellWidths.length <= x) {
-				this.maxCellWidths = Arrays.copyOf(this.maxCellWidths, x + 5);
-			}
-			this.maxCellWidths[x] = min;
+		void setMinCellWidth(int x, int min) {
+			minCellWidths = ensureSize(minCellWidths, x + 1);
+			minCellWidths[x] = min;
+		}
+
+		void setMaxCellWidth(int x, int max) {
+			maxCellWidths = ensureSize(maxCellWidths, x + 1);
+			maxCellWidths[x] = max;
 		}
 
 		void setMinCellHeight(int y, int min) {
-			if (this.minCellHeights == null) {
-				this.minCellHeights = new Integer[y + 1];
-			}
-			if (this.minCellHeights.length <= y) {
-				this.minCellHeights = Arrays.copyOf(this.minCellHeights, y + 5);
-			}
-			this.minCellHeights[y] = min;
+			minCellHeights = ensureSize(minCellHeights, y + 1);
+			minCellHeights[y] = min;
 		}
 
-		void setMaxCellHeight(int y, int min) {
-			if (maxCellHeights == null) {
-				maxCellHeights = new Integer[y + 1];
-			}
-			if (maxCellHeights.length <= y) {
-				maxCellHeights = Arrays.copyOf(this.maxCellHeights, y + 5);
-			}
-			maxCellHeights[y] = min;
+		void setMaxCellHeight(int y, int max) {
+			maxCellHeights = ensureSize(maxCellHeights, y + 1);
+			maxCellHeights[y] = max;
 		}
 
 		void setGridHeight(int size) {
-			this.cellHeight = new int[size];
-			if (this.minCellHeights == null) {
-				this.minCellHeights = new Integer[size];
-			} else {
-				this.minCellHeights = Arrays.copyOf(this.minCellHeights, size);
-			}
-			if (this.maxCellHeights == null) {
-				this.maxCellHeights = new Integer[size];
+			if (cellHeight.length == size) {
+				Arrays.fill(cellHeight, 0);
 			} else {
-				this.maxCellHeights = Arrays.copyOf(this.minCellHeights, size);
+				cellHeight = new int[size];
 			}
+			minCellHeights = ensureSize(minCellHeights, size);
+			maxCellHeights = ensureSize(maxCellHeights, size);
 		}
 
 		void setGridWidth(int size) {
-			this.cellWidth = new int[size];
-			if (this.minCellWidths == null) {
-				this.minCellWidths = new Integer[size];
+			if (cellWidth.length == size) {
+				Arrays.fill(cellWidth, 0);
 			} else {
-				this.minCellWidths = Arrays.copyOf(this.minCellWidths, size);
-			}
-			if (this.maxCellWidths == null) {
-				this.maxCellWidths = new Integer[size];
-			} else {
-				this.maxCellWidths = Arrays.copyOf(this.maxCellWidths, size);
+				cellWidth = new int[size];
 			}
+			minCellWidths = ensureSize(minCellWidths, size);
+			maxCellWidths = ensureSize(maxCellWidths, size);
 		}
 
 		private int getMaxCellWidth(int index) {
-			if (this.maxCellWidths == null || this.maxCellWidths[index] == null) {
-				return this.maxCellWidth;
-			}
-			return this.maxCellWidths[index];
+			int max = index < maxCellWidths.length ? maxCellWidths[index] : UNSET;
+			return max != UNSET ? max : maxCellWidth;
 		}
 
 		private int getMaxCellHeight(int index) {
-			if (this.maxCellHeights == null || this.maxCellHeights[index] == null) {
-				return this.maxCellHeight;
-			}
-			return this.maxCellHeights[index];
+			int max = index < maxCellHeights.length ? maxCellHeights[index] : UNSET;
+			return max != UNSET ? max : maxCellHeight;
 		}
 
 		private int getMinCellWidth(int index) {
-			if (this.minCellWidths == null || this.minCellWidths[index] == null) {
-				return this.minCellWidth;
-			}
-			return this.minCellWidths[index];
+			int min = index < minCellWidths.length ? minCellWidths[index] : UNSET;
+			return min != UNSET ? min : minCellWidth;
 		}
 
 		private int getMinCellHeight(int index) {
-			if (this.minCellHeights == null || this.minCellHeights[index] == null) {
-				return minCellHeight;
+			int min = index < minCellHeights.length ? minCellHeights[index] : UNSET;
+			return min != UNSET ? min : minCellHeight;
+		}
+
+		/**
+		 * Make columns x..x+span-1 at least given width wide. Grid width must be
+		 * set before.
+		 */
+		void setColumnWidth(int x, int span, int width) {
+			for (int end = x + span; x < end; x++) {
+				if (cellWidth[x] < width) {
+					cellWidth[x] = width;
+				}
+			}
+		}
+
+		/**
+		 * Make rows y..y+span-1 at least given height high. Grid height must be
+		 * set before.
+		 */
+		void setRowHeight(int y, int span, int height) {
+			for (int end = y + span; y < end; y++) {
+				if (cellHeight[y] < height) {
+					cellHeight[y] = height;
+				}
+			}
+		}
+
+		/**
+		 * Clamp cell sizes to min/max values. Called by measure pass after
+		 * cell sizes are set.
+		 */
+		void updateTracks() {
+			int columns = cellWidth.length;
+			if (trackWidth.length != columns) {
+				trackWidth = new int[columns];
+				xOffsets = new int[columns + 1];
+			}
+			for (int x = 0; x < columns; x++) {
+				trackWidth[x] = Math.min(getMaxCellWidth(x), Math.max(getMinCellWidth(x), cellWidth[x]));
+			}
+			int rows = cellHeight.length;
+			if (trackHeight.length != rows) {
+				trackHeight = new int[rows];
+				yOffsets = new int[rows + 1];
+			}
+			for (int y = 0; y < rows; y++) {
+				trackHeight[y] = Math.min(getMaxCellHeight(y), Math.max(getMinCellHeight(y), cellHeight[y]));
 			}
-			return this.minCellHeights[index];
+			xOffsetsScale = Double.NaN;
+			yOffsetsValid = false;
 		}
 
-		Dimension getCellSize(int x, int y) {
-			int width = Math.min(getMaxCellWidth(x), Math.max(getMinCellWidth(x), this.cellWidth[x]));
-			int height = Math.min(getMaxCellHeight(y), Math.max(getMinCellHeight(y), this.cellHeight[y]));
-			return new Dimension(width, height);
+		int getTrackWidth(int x) {
+			return trackWidth[x];
 		}
 
-		void setCellSize(int x, int y, int width, int height) {
-			if (x >= this.cellWidth.length) {
-				this.cellWidth = Arrays.copyOf(this.cellWidth, x + 5);
+		int getTrackHeight(int y) {
+			return trackHeight[y];
+		}
+
+		/**
+		 * Compute prefix sums of column widths (multiplied by given scale) and
+		 * row heights. Does nothing if offsets are already computed for this
+		 * scale.
+		 */
+		void updateOffsets(double scaleX) {
+			if (Double.compare(scaleX, xOffsetsScale) != 0) {
+				for (int x = 0; x < trackWidth.length; x++) {
+					double w = trackWidth[x] * scaleX;
+					xOffsets[x + 1] = (int) (xOffsets[x] + Math.min(Math.max(w, getMinCellWidth(x)), getMaxCellWidth(x)));
+				}
+				xOffsetsScale = scaleX;
 			}
-			if (y >= this.cellHeight.length) {
-				this.cellHeight = Arrays.copyOf(this.cellHeight, y + 5);
+			if (!yOffsetsValid) {
+				for (int y = 0; y < trackHeight.length; y++) {
+					int h = trackHeight[y];
+					yOffsets[y + 1] = yOffsets[y] + Math.min(Math.max(h, getMinCellHeight(y)), getMaxCellHeight(y));
+				}
+				yOffsetsValid = true;
 			}
-			this.cellWidth[x] = Math.max(this.cellWidth[x], width);
-			this.cellHeight[y] = Math.max(this.cellHeight[y], height);
+		}
+
+		/**
+		 * @return x offset of column (sum of widths of preceding columns)
+		 */
+		int getXOffset(int x) {
+			return xOffsets[x];
+		}
+
+		/**
+		 * @return y offset of row (sum of heights of preceding rows)
+		 */
+		int getYOffset(int y) {
+			return yOffsets[y];
 		}
 	}
 }
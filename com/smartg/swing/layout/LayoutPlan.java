@@ -0,0 +1,700 @@
+package com.smartg.swing.layout;
+
+import java.awt.Insets;
+import java.awt.Rectangle;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import com.smartg.swing.layout.LayoutNode.BoundaryNode;
+import com.smartg.swing.layout.LayoutNode.GridNode;
+import com.smartg.swing.layout.LayoutNode.HorizontalNode;
+import com.smartg.swing.layout.LayoutNode.ItemNode;
+import com.smartg.swing.layout.LayoutNode.LeafNode;
+import com.smartg.swing.layout.LayoutNode.RectNode;
+import com.smartg.swing.layout.LayoutNode.VerticalNode;
+
+/**
+ * Flat representation of LayoutNode tree. Nodes are stored in breadth-first
+ * order (so children of each node are adjacent) in parallel primitive arrays.
+ * Layout is made by two loops over these arrays: measure (from last node to
+ * first) and arrange (from first node to last).
+ * <p>
+ * Plan must be compiled again after any structural or property change of the
+ * tree (see {@link #getModCount()}). Only preferred sizes of leafs are read
+ * from the tree on every pass. Border insets are captured at compile time.
+ * <p>
+ * Pass may be split in {@link #measureLeaves()}, which must run on Event
+ * Dispatch Thread, and {@link #compute(Rectangle, LayoutContext)}, which may
+ * run in background.
+ * <p>
+ * Arrays which describe tree are never changed after compile, so they are
+ * shared by copies of plan (see {@link #copy()}), each copy has its own
+ * arrays for results of measure and arrange.
+ */
+final class LayoutPlan {
+
+	static final byte LEAF = 0;
+	static final byte VERTICAL = 1;
+	static final byte HORIZONTAL = 2;
+	static final byte RECT = 3;
+	static final byte GRID = 4;
+	static final byte ITEM = 5;
+	static final byte BOUNDARY = 6;
+
+	private static final byte STRETCHED = (byte) NodeAlignment.STRETCHED.ordinal();
+	private static final byte CENTER = (byte) NodeAlignment.CENTER.ordinal();
+	private static final byte RIGHT = (byte) NodeAlignment.RIGHT.ordinal();
+	private static final byte BOTTOM = (byte) NodeAlignment.BOTTOM.ordinal();
+
+	private final int modCount;
+	private final int size;
+
+	private final LayoutNode[] nodes;
+	private final byte[] kind;
+	private final int[] firstChild;
+	private final int[] childCount;
+	private final byte[] hAlign;
+	private final byte[] vAlign;
+	private final int[] hgap;
+	private final int[] vgap;
+	// top, left, bottom, right
+	private final int[] insets;
+	// x, y, width, height of node inside of parent RectNode or GridNode
+	private final double[] constraints;
+
+	// BoundaryNode only: fixed width and height
+	private final int[] fixedSize;
+	// GridNode only: x, y, width, height of grid
+	private final int[] gridBounds;
+	// GridNode only: index of first column/row in track arrays
+	private final int[] colBase;
+	private final int[] rowBase;
+	private final int[] colMin, colMax, rowMin, rowMax;
+	private final int[] colWidth, rowHeight;
+	// GridNode only: index of first column/row offset in offset arrays
+	private final int[] colOffsetBase;
+	private final int[] rowOffsetBase;
+	// prefix sums of column widths and row heights, one more than tracks
+	private final int[] colOffset, rowOffset;
+
+	// ItemNode only: index of item
+	private final int[] itemIndex;
+	// index of node for each item
+	private final int[] itemNode;
+
+	private final int[] measuredWidth, measuredHeight;
+	private final int[] destX, destY, destWidth, destHeight;
+	// x, y, width, height of each item
+	private final int[] itemBounds;
+
+	private final Rectangle scratch = new Rectangle();
+
+	private LayoutPlan(LayoutNode root, ArrayList<LayoutNode> list, byte[] kind, int colCount, int rowCount,
+			int gridCount) {
+		this.modCount = root.getModCount();
+		this.size = list.size();
+		this.nodes = list.toArray(new LayoutNode[size]);
+		this.kind = kind;
+		this.firstChild = new int[size];
+		this.childCount = new int[size];
+		this.hAlign = new byte[size];
+		this.vAlign = new byte[size];
+		this.hgap = new int[size];
+		this.vgap = new int[size];
+		this.insets = new int[size * 4];
+		this.constraints = new double[size * 4];
+		this.fixedSize = new int[size * 2];
+		this.gridBounds = new int[size * 4];
+		this.colBase = new int[size];
+		this.rowBase = new int[size];
+		this.colMin = new int[colCount];
+		this.colMax = new int[colCount];
+		this.rowMin = new int[rowCount];
+		this.rowMax = new int[rowCount];
+		this.colWidth = new int[colCount];
+		this.rowHeight = new int[rowCount];
+		this.colOffsetBase = new int[size];
+		this.rowOffsetBase = new int[size];
+		this.colOffset = new int[colCount + gridCount];
+		this.rowOffset = new int[rowCount + gridCount];
+		this.itemIndex = new int[size];
+		int items = 0;
+		for (int i = 0; i < size; i++) {
+			itemIndex[i] = kind[i] == ITEM ? items++ : -1;
+		}
+		this.itemNode = new int[items];
+		for (int i = 0; i < size; i++) {
+			if (kind[i] == ITEM) {
+				itemNode[itemIndex[i]] = i;
+			}
+		}
+		this.measuredWidth = new int[size];
+		this.measuredHeight = new int[size];
+		this.destX = new int[size];
+		this.destY = new int[size];
+		this.destWidth = new int[size];
+		this.destHeight = new int[size];
+		this.itemBounds = new int[items * 4];
+	}
+
+	/**
+	 * Copy constructor: tree description is shared, results are not.
+	 */
+	private LayoutPlan(LayoutPlan p) {
+		this.modCount = p.modCount;
+		this.size = p.size;
+		this.nodes = p.nodes;
+		this.kind = p.kind;
+		this.firstChild = p.firstChild;
+		this.childCount = p.childCount;
+		this.hAlign = p.hAlign;
+		this.vAlign = p.vAlign;
+		this.hgap = p.hgap;
+		this.vgap = p.vgap;
+		this.insets = p.insets;
+		this.constraints = p.constraints;
+		this.fixedSize = p.fixedSize;
+		this.gridBounds = p.gridBounds;
+		this.colBase = p.colBase;
+		this.rowBase = p.rowBase;
+		this.colMin = p.colMin;
+		this.colMax = p.colMax;
+		this.rowMin = p.rowMin;
+		this.rowMax = p.rowMax;
+		this.colWidth = new int[p.colWidth.length];
+		this.rowHeight = new int[p.rowHeight.length];
+		this.colOffsetBase = p.colOffsetBase;
+		this.rowOffsetBase = p.rowOffsetBase;
+		this.colOffset = new int[p.colOffset.length];
+		this.rowOffset = new int[p.rowOffset.length];
+		this.itemIndex = p.itemIndex;
+		this.itemNode = p.itemNode;
+		this.measuredWidth = p.measuredWidth.clone();
+		this.measuredHeight = p.measuredHeight.clone();
+		this.destX = new int[size];
+		this.destY = new int[size];
+		this.destWidth = new int[size];
+		this.destHeight = new int[size];
+		this.itemBounds = new int[p.itemBounds.length];
+	}
+
+	/**
+	 * @return plan for same tree, which may be used by another thread
+	 */
+	LayoutPlan copy() {
+		return new LayoutPlan(this);
+	}
+
+	/**
+	 * Compile tree with given root.
+	 *
+	 * @return compiled plan or null if tree contains nodes of unknown type
+	 */
+	static LayoutPlan compile(LayoutNode root) {
+		// grid limits are known only after measure
+		root.measure();
+
+		ArrayList<LayoutNode> list = new ArrayList<>();
+		list.add(root);
+		for (int i = 0; i < list.size(); i++) {
+			for (LayoutNode child : list.get(i)) {
+				list.add(child);
+			}
+		}
+
+		int size = list.size();
+		byte[] kind = new byte[size];
+		int colCount = 0;
+		int rowCount = 0;
+		int gridCount = 0;
+		for (int i = 0; i < size; i++) {
+			LayoutNode node = list.get(i);
+			Class<?> type = node.getClass();
+			if (type == LeafNode.class) {
+				kind[i] = LEAF;
+			} else if (type == ItemNode.class) {
+				kind[i] = ITEM;
+			} else if (type == VerticalNode.class) {
+				kind[i] = VERTICAL;
+			} else if (type == HorizontalNode.class) {
+				kind[i] = HORIZONTAL;
+			} else if (type == RectNode.class) {
+				kind[i] = RECT;
+			} else if (type == BoundaryNode.class) {
+				kind[i] = BOUNDARY;
+			} else if (type == GridNode.class) {
+				kind[i] = GRID;
+				Rectangle r = ((GridNode) node).getGridBounds();
+				colCount += r.width + 1;
+				rowCount += r.height + 1;
+				gridCount++;
+			} else {
+				return null;
+			}
+		}
+
+		LayoutPlan plan = new LayoutPlan(root, list, kind, colCount, rowCount, gridCount);
+		plan.init();
+		return plan;
+	}
+
+	private void init() {
+		int next = 1;
+		int col = 0;
+		int row = 0;
+		int grids = 0;
+		for (int i = 0; i < size; i++) {
+			LayoutNode node = nodes[i];
+			hAlign[i] = (byte) node.getHorizontalAlignment().ordinal();
+			vAlign[i] = (byte) node.getVerticalAlignment().ordinal();
+			hgap[i] = node.getHgap();
+			vgap[i] = node.getVgap();
+			Insets in = node.getNodeInsets();
+			insets[i * 4] = in.top;
+			insets[i * 4 + 1] = in.left;
+			insets[i * 4 + 2] = in.bottom;
+			insets[i * 4 + 3] = in.right;
+
+			firstChild[i] = next;
+			int count = 0;
+			for (LayoutNode child : node) {
+				int c = next + count++;
+				if (kind[i] == RECT) {
+					Rectangle2D r = ((RectNode) node).getConstraints(child);
+					setConstraints(c, r.getX(), r.getY(), r.getWidth(), r.getHeight());
+				} else if (kind[i] == GRID) {
+					Rectangle r = ((GridNode) node).getConstraints(child);
+					setConstraints(c, r.x, r.y, r.width, r.height);
+				}
+			}
+			childCount[i] = count;
+			next += count;
+
+			if (kind[i] == BOUNDARY) {
+				BoundaryNode boundary = (BoundaryNode) node;
+				fixedSize[i * 2] = boundary.getFixedWidth();
+				fixedSize[i * 2 + 1] = boundary.getFixedHeight();
+			}
+
+			if (kind[i] == GRID) {
+				GridNode grid = (GridNode) node;
+				Rectangle r = grid.getGridBounds();
+				gridBounds[i * 4] = r.x;
+				gridBounds[i * 4 + 1] = r.y;
+				gridBounds[i * 4 + 2] = r.width;
+				gridBounds[i * 4 + 3] = r.height;
+				colBase[i] = col;
+				colOffsetBase[i] = col + grids;
+				rowOffsetBase[i] = row + grids;
+				grids++;
+				for (int x = 0; x <= r.width; x++) {
+					colMin[col] = grid.getMinCellWidth(x);
+					colMax[col++] = grid.getMaxCellWidth(x);
+				}
+				rowBase[i] = row;
+				for (int y = 0; y <= r.height; y++) {
+					rowMin[row] = grid.getMinCellHeight(y);
+					rowMax[row++] = grid.getMaxCellHeight(y);
+				}
+			}
+		}
+	}
+
+	private void setConstraints(int node, double x, double y, double width, double height) {
+		constraints[node * 4] = x;
+		constraints[node * 4 + 1] = y;
+		constraints[node * 4 + 2] = width;
+		constraints[node * 4 + 3] = height;
+	}
+
+	/**
+	 * @return modCount of root node at compile time
+	 */
+	int getModCount() {
+		return modCount;
+	}
+
+	/**
+	 * @return true if plan contains leafs with Components
+	 */
+	boolean hasComponents() {
+		for (int i = 0; i < size; i++) {
+			if (kind[i] == LEAF) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	int getItemCount() {
+		return itemNode.length;
+	}
+
+	LayoutItem getItem(int item) {
+		return ((ItemNode) nodes[itemNode[item]]).getItem();
+	}
+
+	/**
+	 * Set preferred size of item, instead of reading it from tree by
+	 * {@link #measureLeaves()}.
+	 */
+	void setItemSize(int item, int width, int height) {
+		int i = itemNode[item];
+		measuredWidth[i] = width + hgap[i] + insets[i * 4 + 1] + insets[i * 4 + 3];
+		measuredHeight[i] = height + vgap[i] + insets[i * 4] + insets[i * 4 + 2];
+	}
+
+	/**
+	 * @return x, y, width and height of each item computed by last pass. Array
+	 *         is reused by next pass.
+	 */
+	int[] getItemBounds() {
+		return itemBounds;
+	}
+
+	/**
+	 * Store bounds computed by last pass in ItemNodes of tree.
+	 */
+	void applyItems() {
+		for (int k = 0; k < itemNode.length; k++) {
+			((ItemNode) nodes[itemNode[k]]).setBounds(itemBounds[k * 4], itemBounds[k * 4 + 1], itemBounds[k * 4 + 2],
+					itemBounds[k * 4 + 3]);
+		}
+	}
+
+	/**
+	 * Layout compiled tree inside of given bounds.
+	 */
+	void layout(Rectangle dest, LayoutContext context) {
+		measureLeaves();
+		compute(dest, context);
+		context.commit();
+		applyItems();
+	}
+
+	/**
+	 * Read preferred sizes of leafs. This is the only step which queries
+	 * components, so it must be called on Event Dispatch Thread.
+	 *
+	 * @return true if some size differs from size read by previous call
+	 */
+	boolean measureLeaves() {
+		boolean changed = false;
+		for (int i = 0; i < size; i++) {
+			if (kind[i] == LEAF || kind[i] == ITEM) {
+				int width = nodes[i].getMeasuredWidth();
+				int height = nodes[i].getMeasuredHeight();
+				if (width != measuredWidth[i] || height != measuredHeight[i]) {
+					measuredWidth[i] = width;
+					measuredHeight[i] = height;
+					changed = true;
+				}
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Compute bounds of all components from leaf sizes read by
+	 * {@link #measureLeaves()}. Bounds are only collected in context, neither
+	 * tree nor components are touched, so this method may be called on any
+	 * thread, as long as plan is not used by another thread at same time.
+	 */
+	void compute(Rectangle dest, LayoutContext context) {
+		context.reset();
+		measure();
+		destX[0] = dest.x;
+		destY[0] = dest.y;
+		destWidth[0] = dest.width;
+		destHeight[0] = dest.height;
+		arrange(context);
+	}
+
+	private void measure() {
+		for (int i = size - 1; i >= 0; i--) {
+			int first = firstChild[i];
+			int last = first + childCount[i];
+			int width = 0;
+			int height = 0;
+			switch (kind[i]) {
+			case LEAF:
+			case ITEM:
+				continue;
+			case VERTICAL:
+				for (int c = first; c < last; c++) {
+					height += measuredHeight[c];
+					width = Math.max(width, measuredWidth[c]);
+				}
+				width += insets[i * 4 + 1] + insets[i * 4 + 3];
+				height += insets[i * 4] + insets[i * 4 + 2];
+				break;
+			case HORIZONTAL:
+				for (int c = first; c < last; c++) {
+					width += measuredWidth[c];
+					height = Math.max(height, measuredHeight[c]);
+				}
+				width += insets[i * 4 + 1] + insets[i * 4 + 3];
+				height += insets[i * 4] + insets[i * 4 + 2];
+				break;
+			case RECT:
+				double w = 0;
+				double h = 0;
+				for (int c = first; c < last; c++) {
+					w = Math.max(measuredWidth[c] / constraints[c * 4 + 2], w);
+					h = Math.max(measuredHeight[c] / constraints[c * 4 + 3], h);
+				}
+				w += insets[i * 4 + 1] + insets[i * 4 + 3];
+				h += insets[i * 4] + insets[i * 4 + 2];
+				// same rounding as Dimension.setSize(double, double)
+				width = (int) Math.ceil(w);
+				height = (int) Math.ceil(h);
+				break;
+			case GRID:
+				measureGrid(i, first, last);
+				width = measuredWidth[i];
+				height = measuredHeight[i];
+				break;
+			case BOUNDARY:
+				width = fixedSize[i * 2];
+				height = fixedSize[i * 2 + 1];
+				break;
+			}
+			measuredWidth[i] = width;
+			measuredHeight[i] = height;
+		}
+	}
+
+	private void measureGrid(int i, int first, int last) {
+		int cols = colBase[i];
+		int rows = rowBase[i];
+		int gx = gridBounds[i * 4];
+		int gy = gridBounds[i * 4 + 1];
+		int gw = gridBounds[i * 4 + 2];
+		int gh = gridBounds[i * 4 + 3];
+		Arrays.fill(colWidth, cols, cols + gw + 1, 0);
+		Arrays.fill(rowHeight, rows, rows + gh + 1, 0);
+
+		for (int c = first; c < last; c++) {
+			int x0 = (int) constraints[c * 4];
+			int y0 = (int) constraints[c * 4 + 1];
+			int spanX = (int) constraints[c * 4 + 2];
+			int spanY = (int) constraints[c * 4 + 3];
+			if (spanX <= 0 || spanY <= 0) {
+				continue;
+			}
+			int cw = (int) (measuredWidth[c] / (double) spanX);
+			int ch = (int) (measuredHeight[c] / (double) spanY);
+			for (int x = x0; x < x0 + spanX; x++) {
+				colWidth[cols + x] = Math.max(colWidth[cols + x], cw);
+			}
+			for (int y = y0; y < y0 + spanY; y++) {
+				rowHeight[rows + y] = Math.max(rowHeight[rows + y], ch);
+			}
+		}
+
+		int width = 0;
+		for (int x = gx; x < gx + gw; x++) {
+			width += cellWidth(cols + x);
+		}
+		int height = 0;
+		for (int y = gy; y < gy + gh; y++) {
+			height += cellHeight(rows + y);
+		}
+		measuredWidth[i] = width + insets[i * 4 + 1] + insets[i * 4 + 3];
+		measuredHeight[i] = height + insets[i * 4] + insets[i * 4 + 2];
+	}
+
+	private int cellWidth(int col) {
+		return Math.min(colMax[col], Math.max(colMin[col], colWidth[col]));
+	}
+
+	private int cellHeight(int row) {
+		return Math.min(rowMax[row], Math.max(rowMin[row], rowHeight[row]));
+	}
+
+	private void arrange(LayoutContext context) {
+		for (int i = 0; i < size; i++) {
+			context.nodeVisited();
+			int x = destX[i];
+			int y = destY[i];
+			int width = destWidth[i];
+			int height = destHeight[i];
+			int pw = measuredWidth[i];
+			int ph = measuredHeight[i];
+			byte ha = hAlign[i];
+			byte va = vAlign[i];
+
+			if (kind[i] == GRID) {
+				arrangeGrid(i, x, y, width, height);
+				continue;
+			}
+
+			int top = insets[i * 4];
+			int left = insets[i * 4 + 1];
+			x += left;
+			y += top;
+			width -= left + insets[i * 4 + 3];
+			height -= top + insets[i * 4 + 2];
+
+			int first = firstChild[i];
+			int last = first + childCount[i];
+
+			switch (kind[i]) {
+			case LEAF:
+			case ITEM:
+				arrangeLeaf(i, x, y, width, height, context);
+				break;
+			case VERTICAL: {
+				int w = ha == STRETCHED ? width : Math.min(width, pw);
+				float m = 1f;
+				if (height < ph || va == STRETCHED) {
+					m = (float) ((double) height / ph);
+				}
+				int cx = x + adjust(ha, RIGHT, width, pw);
+				int cy = y + adjust(va, BOTTOM, height, ph);
+				for (int c = first; c < last; c++) {
+					double h = measuredHeight[c] * m;
+					setDest(c, cx, cy, w, (int) h);
+					cy += h;
+				}
+				break;
+			}
+			case HORIZONTAL: {
+				int h = va == STRETCHED ? height : Math.min(height, ph);
+				double m = 1;
+				if (width < pw || ha == STRETCHED) {
+					m = (double) width / pw;
+				}
+				int cx = x + adjust(ha, RIGHT, width, pw);
+				int cy = y + adjust(va, BOTTOM, height, ph);
+				for (int c = first; c < last; c++) {
+					double w = measuredWidth[c] * m;
+					scratch.setRect(cx, cy, w, h);
+					setDest(c, scratch.x, scratch.y, scratch.width, scratch.height);
+					cx += w;
+				}
+				break;
+			}
+			case RECT:
+				for (int c = first; c < last; c++) {
+					int cx = (int) (width * constraints[c * 4]);
+					int cy = (int) (height * constraints[c * 4 + 1]);
+					int cw = (int) (width * constraints[c * 4 + 2]);
+					int ch = (int) (height * constraints[c * 4 + 3]);
+					setDest(c, x + cx, y + cy, cw, ch);
+				}
+				break;
+			case BOUNDARY:
+				for (int c = first; c < last; c++) {
+					setDest(c, x, y, width, height);
+				}
+				break;
+			}
+		}
+	}
+
+	private void arrangeGrid(int i, int x, int y, int width, int height) {
+		int pw = measuredWidth[i];
+		int ph = measuredHeight[i];
+
+		double mx = 1;
+		if (hAlign[i] == STRETCHED) {
+			mx = (double) width / pw;
+		}
+
+		int dx = adjust(hAlign[i], RIGHT, width - x, pw);
+		int dy = adjust(vAlign[i], BOTTOM, height - y, ph);
+
+		x += insets[i * 4 + 1];
+		y += insets[i * 4];
+
+		// prefix sums, same as GridModel.updateOffsets
+		int cols = colBase[i];
+		int xo = colOffsetBase[i];
+		colOffset[xo] = 0;
+		for (int t = 0; t <= gridBounds[i * 4 + 2]; t++) {
+			double w = cellWidth(cols + t) * mx;
+			colOffset[xo + t + 1] = (int) (colOffset[xo + t] + Math.min(Math.max(w, colMin[cols + t]), colMax[cols + t]));
+		}
+		int rows = rowBase[i];
+		int yo = rowOffsetBase[i];
+		rowOffset[yo] = 0;
+		for (int t = 0; t <= gridBounds[i * 4 + 3]; t++) {
+			int h = cellHeight(rows + t);
+			rowOffset[yo + t + 1] = rowOffset[yo + t] + Math.min(Math.max(h, rowMin[rows + t]), rowMax[rows + t]);
+		}
+
+		int first = firstChild[i];
+		int last = first + childCount[i];
+		for (int c = first; c < last; c++) {
+			int cx = xo + (int) constraints[c * 4];
+			int cy = yo + (int) constraints[c * 4 + 1];
+			int cw = (int) constraints[c * 4 + 2];
+			int ch = (int) constraints[c * 4 + 3];
+
+			int ox = colOffset[cx];
+			int oy = rowOffset[cy];
+			setDest(c, x + ox + dx, y + oy + dy, colOffset[cx + cw] - ox, rowOffset[cy + ch] - oy);
+		}
+	}
+
+	private void arrangeLeaf(int i, int x, int y, int width, int height, LayoutContext context) {
+		int hg = hgap[i];
+		int vg = vgap[i];
+		byte ha = hAlign[i];
+		byte va = vAlign[i];
+		if (ha == STRETCHED && va == STRETCHED) {
+			setLeafBounds(i, x + hg, y + vg, width - hg, height - vg, context);
+		} else {
+			int pw = measuredWidth[i];
+			int ph = measuredHeight[i];
+
+			double mx = 1;
+			if (ha == STRETCHED) {
+				mx = (double) width / pw;
+			}
+			double my = 1;
+			if (va == STRETCHED) {
+				my = (double) height / ph;
+			}
+
+			// same (swapped) arguments as LeafNode
+			int dx = adjust(ha, RIGHT, height, ph);
+			int dy = adjust(va, BOTTOM, width, pw);
+
+			setLeafBounds(i, x + dx + hg, y + dy + vg, (int) (pw * mx - hg), (int) (ph * my - vg), context);
+		}
+	}
+
+	private void setLeafBounds(int i, int x, int y, int width, int height, LayoutContext context) {
+		int item = itemIndex[i];
+		if (item < 0) {
+			context.setBounds(((LeafNode) nodes[i]).getComponent(), x, y, width, height);
+		} else {
+			itemBounds[item * 4] = x;
+			itemBounds[item * 4 + 1] = y;
+			itemBounds[item * 4 + 2] = width;
+			itemBounds[item * 4 + 3] = height;
+		}
+	}
+
+	private void setDest(int node, int x, int y, int width, int height) {
+		destX[node] = x;
+		destY[node] = y;
+		destWidth[node] = width;
+		destHeight[node] = height;
+	}
+
+	/**
+	 * Same as LayoutNode.adjustX/adjustY.
+	 */
+	private static int adjust(byte alignment, byte far, int dest, int preferred) {
+		if (alignment == far) {
+			return Math.max(0, dest - preferred);
+		} else if (alignment == CENTER) {
+			return Math.max(0, (dest - preferred) / 2);
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,88 @@
+package com.smartg.swing.layout;
+
+import java.awt.Rectangle;
+
+/**
+ * Compiled node tree of {@link LayoutItem}s, which may be laid out many times
+ * with different item sizes.
+ * <p>
+ * Template is immutable after {@link #compile(LayoutNode)}, so one template
+ * may be shared by any number of threads. Each call of
+ * {@link #layout(int[], Rectangle)} works on its own copy of scratch arrays
+ * and doesn't touch node tree or items.
+ */
+public final class LayoutTemplate {
+
+	private final LayoutPlan plan;
+
+	private LayoutTemplate(LayoutPlan plan) {
+		this.plan = plan;
+	}
+
+	/**
+	 * Compile tree with given root. Tree should not be changed while compile
+	 * runs, later changes of tree are not seen by template.
+	 *
+	 * @throws IllegalArgumentException if tree contains Components or nodes of
+	 *             unknown type
+	 */
+	public static LayoutTemplate compile(LayoutNode root) {
+		LayoutPlan plan = LayoutPlan.compile(root);
+		if (plan == null) {
+			throw new IllegalArgumentException("Tree contains nodes of unknown type");
+		}
+		if (plan.hasComponents()) {
+			throw new IllegalArgumentException("Tree contains Components");
+		}
+		// remember sizes of items, used when job gives no sizes
+		plan.measureLeaves();
+		return new LayoutTemplate(plan);
+	}
+
+	/**
+	 * @return number of items in template
+	 */
+	public int getItemCount() {
+		return plan.getItemCount();
+	}
+
+	/**
+	 * Items are numbered level by level, in order of children.
+	 *
+	 * @return item with given index
+	 */
+	public LayoutItem getItem(int index) {
+		return plan.getItem(index);
+	}
+
+	/**
+	 * Lay out items with their preferred sizes, as they was at compile time.
+	 *
+	 * @return x, y, width and height of each item
+	 */
+	public int[] layout(Rectangle dest) {
+		return layout(null, dest);
+	}
+
+	/**
+	 * Lay out items with given preferred sizes.
+	 *
+	 * @param sizes preferred width and height of each item or null to use sizes
+	 *            known at compile time
+	 * @return x, y, width and height of each item
+	 */
+	public int[] layout(int[] sizes, Rectangle dest) {
+		LayoutPlan p = plan.copy();
+		if (sizes != null) {
+			int count = p.getItemCount();
+			if (sizes.length < count * 2) {
+				throw new IllegalArgumentException("Expected " + count * 2 + " sizes, got " + sizes.length);
+			}
+			for (int i = 0; i < count; i++) {
+				p.setItemSize(i, sizes[i * 2], sizes[i * 2 + 1]);
+			}
+		}
+		p.compute(dest, new LayoutContext());
+		return p.getItemBounds();
+	}
+}
@@ -30,8 +30,13 @@
 
 package com.smartg.swing.layout;
 
+/**
+ * Constraints for JNodeLayout. Target node may be given by name or as
+ * reference to LayoutNode, which saves name lookup.
+ */
 public class NodeConstraints {
     private String name;
+    private LayoutNode node;
     private Object constraints;
 //    private NodeAlignment horizontalAlignment;
 //    private NodeAlignment verticalAlignment;
@@ -45,6 +50,16 @@ public class NodeConstraints {
 	this.constraints = constraints;
     }
 
+    public NodeConstraints(LayoutNode node) {
+	this(node, null);
+    }
+
+    public NodeConstraints(LayoutNode node, Object constraints) {
+	this.name = node.getName();
+	this.node = node;
+	this.constraints = constraints;
+    }
+
 //    public NodeConstraints(String name, Object constraints, NodeAlignment horizontalAlignment, NodeAlignment verticalAlignment) {
 //	this.name = name;
 //	this.constraints = constraints;
@@ -56,6 +71,13 @@ public class NodeConstraints {
 	return name;
     }
 
+    /**
+     * @return target node or null if constraints was created with node name
+     */
+    public LayoutNode getNode() {
+	return node;
+    }
+
     public Object getConstraints() {
 	return constraints;
     }
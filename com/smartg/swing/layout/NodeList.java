@@ -0,0 +1,153 @@
+package com.smartg.swing.layout;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Children of LayoutNode in insertion order.
+ * <p>
+ * Each child remembers its slot in array, so contains and remove don't
+ * search. Removed child leaves a hole in array. Holes are closed in one pass
+ * before next indexed access or when array is full, so building or clearing
+ * of node with n children takes O(n).
+ */
+class NodeList implements Iterable<LayoutNode> {
+
+	private final LayoutNode owner;
+	private LayoutNode[] nodes = new LayoutNode[8];
+	// number of used slots, including holes
+	private int end;
+	private int size;
+
+	NodeList(LayoutNode owner) {
+		this.owner = owner;
+	}
+
+	boolean contains(LayoutNode node) {
+		int slot = node.slot;
+		return slot >= 0 && slot < end && nodes[slot] == node;
+	}
+
+	/**
+	 * Append node to end of list.
+	 *
+	 * @return false if node is already in list
+	 */
+	boolean add(LayoutNode node) {
+		if (contains(node)) {
+			return false;
+		}
+		if (end == nodes.length) {
+			if (size < end / 2) {
+				compact();
+			} else {
+				nodes = Arrays.copyOf(nodes, end * 2);
+			}
+		}
+		nodes[end] = node;
+		node.slot = end;
+		end++;
+		size++;
+		return true;
+	}
+
+	/**
+	 * @return false if node is not in list
+	 */
+	boolean remove(LayoutNode node) {
+		if (!contains(node)) {
+			return false;
+		}
+		nodes[node.slot] = null;
+		node.slot = -1;
+		size--;
+		if (size == 0) {
+			Arrays.fill(nodes, 0, end, null);
+			end = 0;
+		}
+		return true;
+	}
+
+	/**
+	 * Note that slot of each node is equal to its index after this call.
+	 */
+	LayoutNode get(int index) {
+		compact();
+		return nodes[index];
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Close holes left by removed nodes, so slot of each node becomes equal to
+	 * its index.
+	 */
+	void compact() {
+		if (end == size) {
+			return;
+		}
+		int n = 0;
+		for (int i = 0; i < end; i++) {
+			LayoutNode node = nodes[i];
+			if (node != null) {
+				if (i != n) {
+					nodes[n] = node;
+					node.slot = n;
+					moved(i, n);
+				}
+				n++;
+			}
+		}
+		Arrays.fill(nodes, n, end, null);
+		end = n;
+	}
+
+	/**
+	 * Called by {@link #compact()} for each node which slot was changed.
+	 * Subclasses may use it to keep parallel arrays in sync.
+	 */
+	protected void moved(int from, int to) {
+	}
+
+	@Override
+	public Iterator<LayoutNode> iterator() {
+		return new Iterator<LayoutNode>() {
+			private int cursor = skipHoles(0);
+			private LayoutNode last;
+
+			@Override
+			public boolean hasNext() {
+				return cursor < end;
+			}
+
+			@Override
+			public LayoutNode next() {
+				if (cursor >= end) {
+					throw new NoSuchElementException();
+				}
+				last = nodes[cursor];
+				cursor = skipHoles(cursor + 1);
+				return last;
+			}
+
+			@Override
+			public void remove() {
+				if (last == null) {
+					throw new IllegalStateException();
+				}
+				owner.remove(last);
+				last = null;
+			}
+		};
+	}
+
+	private int skipHoles(int i) {
+		while (i < end && nodes[i] == null) {
+			i++;
+		}
+		return i;
+	}
+}
@@ -0,0 +1,19 @@
+package com.smartg.swing.layout;
+
+import java.awt.Component;
+
+/**
+ * Creates components for rows of
+ * {@link LayoutNode.VirtualVerticalNode}.
+ */
+public interface RowFactory {
+
+	/**
+	 * Return component which shows given row. Components of rows which are
+	 * scrolled out of view are passed back as recycled, so factory may
+	 * configure recycled component for new row instead of creating new one.
+	 *
+	 * @param recycled component which is not used by any row or null
+	 */
+	Component getRow(int row, Component recycled);
+}
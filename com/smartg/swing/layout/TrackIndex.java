@@ -0,0 +1,140 @@
+package com.smartg.swing.layout;
+
+import java.util.Arrays;
+
+/**
+ * Sizes of tracks (rows or columns) with prefix sums.
+ * <p>
+ * Prefix sums are kept in Fenwick tree, so offset of track, track at given
+ * offset and update of one size take O(log n). Tracks which size is not known
+ * yet have default (estimated) size.
+ * <p>
+ * Size of grid track is maximum of its cells, which are measured one by one.
+ * Such tracks are updated with {@link #grow(int, int)}: first measured cell
+ * replaces estimated size, next cells may only enlarge track.
+ */
+final class TrackIndex {
+
+	private int count;
+	private final int defaultSize;
+	private int[] sizes;
+	private boolean[] known;
+	// Fenwick tree, 1-based
+	private int[] tree;
+
+	TrackIndex(int count, int defaultSize) {
+		this.defaultSize = defaultSize;
+		this.sizes = new int[0];
+		this.known = new boolean[0];
+		setCount(count);
+	}
+
+	int getCount() {
+		return count;
+	}
+
+	int getDefaultSize() {
+		return defaultSize;
+	}
+
+	/**
+	 * Change number of tracks. New tracks get default size. Takes O(n).
+	 */
+	void setCount(int count) {
+		int old = Math.min(this.count, count);
+		sizes = Arrays.copyOf(sizes, count);
+		Arrays.fill(sizes, old, count, defaultSize);
+		known = Arrays.copyOf(known, count);
+		this.count = count;
+		rebuild();
+	}
+
+	private void rebuild() {
+		tree = new int[count + 1];
+		for (int i = 1; i <= count; i++) {
+			tree[i] += sizes[i - 1];
+			int j = i + (i & -i);
+			if (j <= count) {
+				tree[j] += tree[i];
+			}
+		}
+	}
+
+	int getSize(int index) {
+		return sizes[index];
+	}
+
+	/**
+	 * Set size of track, which becomes known.
+	 */
+	void setSize(int index, int size) {
+		known[index] = true;
+		int delta = size - sizes[index];
+		if (delta != 0) {
+			sizes[index] = size;
+			for (int i = index + 1; i <= count; i += i & -i) {
+				tree[i] += delta;
+			}
+		}
+	}
+
+	/**
+	 * Set size of track if it is not known yet or if given size is larger.
+	 *
+	 * @return true if size of track was changed
+	 */
+	boolean grow(int index, int size) {
+		int old = sizes[index];
+		if (known[index] && size <= old) {
+			return false;
+		}
+		setSize(index, size);
+		return size != old;
+	}
+
+	/**
+	 * Mark size of track as unknown. Size is kept until track is measured
+	 * again.
+	 */
+	void forget(int index) {
+		known[index] = false;
+	}
+
+	/**
+	 * @return sum of sizes of tracks before given track
+	 */
+	int getOffset(int index) {
+		int sum = 0;
+		for (int i = index; i > 0; i -= i & -i) {
+			sum += tree[i];
+		}
+		return sum;
+	}
+
+	/**
+	 * @return sum of sizes of all tracks
+	 */
+	int getTotal() {
+		return getOffset(count);
+	}
+
+	/**
+	 * @return index of track which contains given offset (first or last track
+	 *         if offset is out of range) or -1 if there are no tracks
+	 */
+	int indexAt(int offset) {
+		if (count == 0) {
+			return -1;
+		}
+		int pos = 0;
+		int rest = offset;
+		for (int bit = Integer.highestOneBit(count); bit > 0; bit >>= 1) {
+			int next = pos + bit;
+			if (next <= count && tree[next] <= rest) {
+				pos = next;
+				rest -= tree[next];
+			}
+		}
+		return Math.max(0, Math.min(pos, count - 1));
+	}
+}
@@ -0,0 +1,23 @@
+package com.smartg.swing.layout;
+
+import java.awt.Rectangle;
+
+/**
+ * Node which has components only for visible part of its rows.
+ *
+ * @see VirtualPanel
+ */
+interface VirtualNode {
+
+	int getEstimatedRowHeight();
+
+	/**
+	 * @return row at given y coordinate of target or -1
+	 */
+	int getRowAt(int y);
+
+	/**
+	 * @return bounds of given row in target
+	 */
+	Rectangle getRowBounds(int row);
+}
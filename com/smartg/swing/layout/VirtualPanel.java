@@ -0,0 +1,231 @@
+package com.smartg.swing.layout;
+
+import java.awt.Container;
+import java.awt.Dimension;
+import java.awt.Insets;
+import java.awt.LayoutManager;
+import java.awt.Point;
+import java.awt.Rectangle;
+
+import javax.swing.JPanel;
+import javax.swing.JViewport;
+import javax.swing.Scrollable;
+import javax.swing.SwingConstants;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+import com.smartg.swing.layout.LayoutNode.VirtualGridNode;
+import com.smartg.swing.layout.LayoutNode.VirtualVerticalNode;
+
+/**
+ * Scrollable panel for {@link VirtualVerticalNode} or {@link VirtualGridNode}.
+ * Panel should be placed in JScrollPane: panel is revalidated on each change
+ * of view position, so rows (or cells) are realized again and validated
+ * before they are painted. Unit scroll increment moves view to next row (or
+ * column) boundary.
+ */
+public class VirtualPanel extends JPanel implements Scrollable {
+
+	private static final long serialVersionUID = -2870391446180311597L;
+
+	private static final int MAX_SCROLL_PASSES = 8;
+
+	private final LayoutNode root;
+	private final VirtualNode rows;
+	private final JNodeLayout layout;
+	private int visibleRowCount = 8;
+
+	private JViewport viewport;
+	private final Point viewPosition = new Point();
+	private final ChangeListener scrollListener = new ChangeListener() {
+		@Override
+		public void stateChanged(ChangeEvent e) {
+			Point p = viewport.getViewPosition();
+			if (!p.equals(viewPosition)) {
+				viewPosition.setLocation(p);
+				root.requestLayout();
+				// realized rows, which may be Containers, are validated too
+				revalidate();
+			}
+		}
+	};
+
+	public VirtualPanel(VirtualVerticalNode root) {
+		this(root, root);
+	}
+
+	public VirtualPanel(VirtualGridNode root) {
+		this(root, root);
+	}
+
+	private VirtualPanel(LayoutNode root, VirtualNode rows) {
+		this.root = root;
+		this.rows = rows;
+		this.layout = new JNodeLayout(this, root);
+		super.setLayout(layout);
+	}
+
+	public LayoutNode getRoot() {
+		return root;
+	}
+
+	@Override
+	public final JNodeLayout getLayout() {
+		return layout;
+	}
+
+	@Override
+	public final void setLayout(LayoutManager m) {
+		if (m instanceof JNodeLayout) {
+			super.setLayout(m);
+		}
+	}
+
+	@Override
+	public void addNotify() {
+		super.addNotify();
+		Container parent = getParent();
+		if (parent instanceof JViewport) {
+			viewport = (JViewport) parent;
+			viewport.addChangeListener(scrollListener);
+		}
+	}
+
+	@Override
+	public void removeNotify() {
+		if (viewport != null) {
+			viewport.removeChangeListener(scrollListener);
+			viewport = null;
+		}
+		super.removeNotify();
+	}
+
+	/**
+	 * Scroll given row into view. Position of row is found in O(log n), rows
+	 * around it are realized by same call.
+	 */
+	public void scrollToRow(int row) {
+		scrollTo(row, -1);
+	}
+
+	/**
+	 * Scroll given cell of VirtualGridNode into view.
+	 */
+	public void scrollToCell(int row, int column) {
+		scrollTo(row, column);
+	}
+
+	/**
+	 * Measured sizes of realized rows may differ from estimated, which moves
+	 * given row and changes size of panel. Panel is validated together with
+	 * its scroll pane and scrolled again, until bounds of row and size of
+	 * panel are stable.
+	 */
+	private void scrollTo(int row, int column) {
+		int x = getVisibleRect().x;
+		Rectangle r = null;
+		Dimension size = null;
+		for (int pass = 0; pass < MAX_SCROLL_PASSES; pass++) {
+			Rectangle exact;
+			if (column < 0) {
+				exact = rows.getRowBounds(row);
+				exact.x = x;
+				exact.width = 1;
+			} else {
+				exact = ((VirtualGridNode) root).getCellBounds(row, column);
+			}
+			if (exact.equals(r) && getSize().equals(size)) {
+				return;
+			}
+			r = exact;
+			size = getSize();
+			scrollRectToVisible(r);
+			invalidate();
+			validateRoot();
+		}
+	}
+
+	/**
+	 * Validate enclosing validate root (usually JScrollPane), so preferred
+	 * size of this panel is applied by viewport. Containers which are not
+	 * displayable are not validated, so search stops below them.
+	 */
+	private void validateRoot() {
+		Container c = this;
+		while (!c.isValidateRoot() && c.getParent() != null && c.getParent().isDisplayable()) {
+			c = c.getParent();
+		}
+		c.validate();
+	}
+
+	public int getVisibleRowCount() {
+		return visibleRowCount;
+	}
+
+	/**
+	 * Set number of rows (of estimated height) shown without scrolling.
+	 */
+	public void setVisibleRowCount(int visibleRowCount) {
+		this.visibleRowCount = visibleRowCount;
+		revalidate();
+	}
+
+	@Override
+	public Dimension getPreferredScrollableViewportSize() {
+		Dimension d = getPreferredSize();
+		Insets insets = getInsets();
+		int height = visibleRowCount * rows.getEstimatedRowHeight() + insets.top + insets.bottom;
+		d.height = Math.min(d.height, height);
+		return d;
+	}
+
+	@Override
+	public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+		if (orientation == SwingConstants.VERTICAL) {
+			int row = rows.getRowAt(visibleRect.y);
+			if (row < 0) {
+				return rows.getEstimatedRowHeight();
+			}
+			Rectangle r = rows.getRowBounds(row);
+			if (direction < 0) {
+				if (r.y == visibleRect.y) {
+					return row > 0 ? rows.getRowBounds(row - 1).height : 0;
+				}
+				return visibleRect.y - r.y;
+			}
+			return r.y + r.height - visibleRect.y;
+		}
+		if (root instanceof VirtualGridNode) {
+			VirtualGridNode grid = (VirtualGridNode) root;
+			int column = grid.getColumnAt(visibleRect.x);
+			if (column >= 0) {
+				Rectangle r = grid.getColumnBounds(column);
+				if (direction < 0) {
+					if (r.x == visibleRect.x) {
+						return column > 0 ? grid.getColumnBounds(column - 1).width : 0;
+					}
+					return visibleRect.x - r.x;
+				}
+				return r.x + r.width - visibleRect.x;
+			}
+		}
+		return getFont() != null ? getFont().getSize() : 1;
+	}
+
+	@Override
+	public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+		return orientation == SwingConstants.VERTICAL ? visibleRect.height : visibleRect.width;
+	}
+
+	@Override
+	public boolean getScrollableTracksViewportWidth() {
+		Container parent = getParent();
+		return parent instanceof JViewport && parent.getWidth() > getPreferredSize().width;
+	}
+
+	@Override
+	public boolean getScrollableTracksViewportHeight() {
+		Container parent = getParent();
+		return parent instanceof JViewport && parent.getHeight() > getPreferredSize().height;
+	}
+}
@@ -0,0 +1,244 @@
+package com.smartg.swing.layout.worker;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+import com.smartg.swing.layout.LayoutTemplate;
+
+/**
+ * Lays out many documents off Event Dispatch Thread, for example forms which
+ * are rendered on server.
+ * <p>
+ * Each {@link Job} is one shared {@link LayoutTemplate} plus item sizes of one
+ * document. Jobs are run by given Executor, at most maxConcurrency at same
+ * time, so producer of jobs is blocked while all permits are taken. Results
+ * are passed to consumer as soon as they are ready, consumer may draw them
+ * into BufferedImage or send them further.
+ * <p>
+ * Executor may be a thread pool or, on Java 21, virtual thread per task
+ * executor (Executors.newVirtualThreadPerTaskExecutor()).
+ */
+public class BatchLayout {
+
+	private final Executor executor;
+	private final int maxConcurrency;
+
+	public BatchLayout(Executor executor, int maxConcurrency) {
+		if (maxConcurrency < 1) {
+			throw new IllegalArgumentException("maxConcurrency must be positive");
+		}
+		this.executor = executor;
+		this.maxConcurrency = maxConcurrency;
+	}
+
+	public int getMaxConcurrency() {
+		return maxConcurrency;
+	}
+
+	/**
+	 * Run all jobs and wait until they are done. Consumer is called by worker
+	 * threads, possibly at same time.
+	 *
+	 * @return statistics of this run
+	 */
+	public Statistics run(Iterator<Job> jobs, final Consumer<Result> consumer) throws InterruptedException {
+		final Semaphore permits = new Semaphore(maxConcurrency);
+		final Statistics stats = new Statistics();
+		long start = System.nanoTime();
+		while (jobs.hasNext()) {
+			final Job job = jobs.next();
+			permits.acquire();
+			final long submitted = System.nanoTime();
+			try {
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							Result result;
+							try {
+								int[] bounds = job.template.layout(job.sizes, job.bounds);
+								result = new Result(job, bounds, System.nanoTime() - submitted, null);
+							} catch (RuntimeException ex) {
+								result = new Result(job, null, System.nanoTime() - submitted, ex);
+							}
+							stats.add(result);
+							consumer.accept(result);
+						} finally {
+							permits.release();
+						}
+					}
+				});
+			} catch (RejectedExecutionException ex) {
+				permits.release();
+				Result result = new Result(job, null, System.nanoTime() - submitted, ex);
+				stats.add(result);
+				consumer.accept(result);
+			}
+		}
+		// all permits are free only when last job is done
+		permits.acquire(maxConcurrency);
+		permits.release(maxConcurrency);
+		stats.elapsed = System.nanoTime() - start;
+		return stats;
+	}
+
+	/**
+	 * Run all jobs and wait until they are done.
+	 *
+	 * @see #run(Iterator, Consumer)
+	 */
+	public Statistics run(Iterable<Job> jobs, Consumer<Result> consumer) throws InterruptedException {
+		return run(jobs.iterator(), consumer);
+	}
+
+	/**
+	 * Layout of one document.
+	 */
+	public static final class Job {
+		private final Object key;
+		private final LayoutTemplate template;
+		private final int[] sizes;
+		private final Rectangle bounds;
+
+		/**
+		 * @param key any object which identifies document, may be null
+		 * @param sizes preferred width and height of each item or null to use
+		 *            sizes of template
+		 * @param bounds target bounds of document
+		 */
+		public Job(Object key, LayoutTemplate template, int[] sizes, Rectangle bounds) {
+			this.key = key;
+			this.template = template;
+			this.sizes = sizes;
+			this.bounds = new Rectangle(bounds);
+		}
+
+		public Object getKey() {
+			return key;
+		}
+
+		public LayoutTemplate getTemplate() {
+			return template;
+		}
+
+		public int[] getSizes() {
+			return sizes;
+		}
+
+		public Rectangle getBounds() {
+			return new Rectangle(bounds);
+		}
+	}
+
+	public static final class Result {
+		private final Job job;
+		private final int[] itemBounds;
+		private final long latency;
+		private final Exception error;
+
+		Result(Job job, int[] itemBounds, long latency, Exception error) {
+			this.job = job;
+			this.itemBounds = itemBounds;
+			this.latency = latency;
+			this.error = error;
+		}
+
+		public Job getJob() {
+			return job;
+		}
+
+		/**
+		 * @return x, y, width and height of each item or null if job failed
+		 */
+		public int[] getItemBounds() {
+			return itemBounds;
+		}
+
+		/**
+		 * @return time from submit of job to its result, in nanoseconds
+		 */
+		public long getLatency() {
+			return latency;
+		}
+
+		/**
+		 * @return exception thrown by job or null
+		 */
+		public Exception getError() {
+			return error;
+		}
+	}
+
+	/**
+	 * Throughput and latency of one run.
+	 */
+	public static final class Statistics {
+		private long[] latencies = new long[64];
+		private int count;
+		private int failed;
+		private long elapsed;
+		private boolean sorted;
+
+		private synchronized void add(Result result) {
+			if (count == latencies.length) {
+				latencies = Arrays.copyOf(latencies, count * 2);
+			}
+			latencies[count++] = result.latency;
+			sorted = false;
+			if (result.error != null) {
+				failed++;
+			}
+		}
+
+		public synchronized int getJobCount() {
+			return count;
+		}
+
+		public synchronized int getFailedCount() {
+			return failed;
+		}
+
+		/**
+		 * @return wall time of run, in nanoseconds
+		 */
+		public long getElapsed() {
+			return elapsed;
+		}
+
+		/**
+		 * @return jobs per second
+		 */
+		public synchronized double getThroughput() {
+			return elapsed > 0 ? count * 1e9 / elapsed : 0;
+		}
+
+		/**
+		 * @param percentile value between 0 and 100
+		 * @return latency in nanoseconds, which is not exceeded by given
+		 *         percentage of jobs (nearest rank)
+		 */
+		public synchronized long getLatency(double percentile) {
+			if (count == 0) {
+				return 0;
+			}
+			if (!sorted) {
+				Arrays.sort(latencies, 0, count);
+				sorted = true;
+			}
+			int rank = (int) Math.ceil(percentile / 100 * count);
+			return latencies[Math.min(count, Math.max(1, rank)) - 1];
+		}
+
+		@Override
+		public String toString() {
+			return String.format("jobs=%d failed=%d throughput=%.1f/s p50=%dus p90=%dus p99=%dus", getJobCount(),
+					getFailedCount(), getThroughput(), getLatency(50) / 1000, getLatency(90) / 1000,
+					getLatency(99) / 1000);
+		}
+	}
+}
@@ -70,7 +70,6 @@ public class JNL_NestedDemo {
 	target.add(button);
 	center.add(button, null);// RectNode accepts null constraints
 
-	layout.syncNodes();
 	layout.verify();
 
 	JFrame frame = new JFrame("Besser als BorderLayout...");
@@ -71,8 +71,6 @@ public class JNL_NestedDemoLive {
 
 	    public void actionPerformed(ActionEvent e) {
 		center = next(target, center, stufe++);
-		layout.syncNodes();
-		layout.verify();
 		SwingUtilities.invokeLater(new Runnable() {
 		    public void run() {
 			target.doLayout();
@@ -86,7 +84,6 @@ public class JNL_NestedDemoLive {
 		    center.add(button, null);
 		    SwingUtilities.invokeLater(new Runnable() {
 			public void run() {
-			    layout.syncNodes();
 			    layout.verify();
 			    target.doLayout();
 			}
@@ -0,0 +1,47 @@
+package com.smartg.swing.layout;
+
+import java.awt.Dimension;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Checks that repeated layout of unchanged tree doesn't allocate, in tree
+ * and in compiled mode, at same size and while container is resized.
+ */
+public class AllocationCheck {
+
+	private static final int WARMUP = 20000;
+	private static final int PASSES = 1000;
+
+	public static void main(String[] args) {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		for (int seed = 0; seed < 8; seed++) {
+			for (boolean compiled : new boolean[] { false, true }) {
+				TestTree tree = new TestTree(seed, 4);
+				tree.layout.setCompiled(compiled);
+				String name = "tree " + seed + (compiled ? ", compiled" : "");
+				Check.that(allocatedBytes(threads, tree, false) < PASSES, "allocation of layout at same size, " + name);
+				Check.that(allocatedBytes(threads, tree, true) < PASSES, "allocation of layout while resized, " + name);
+			}
+		}
+		System.out.println("AllocationCheck: ok");
+	}
+
+	private static long allocatedBytes(com.sun.management.ThreadMXBean threads, TestTree tree, boolean resize) {
+		Dimension d = tree.panel.getPreferredSize();
+		for (int i = 0; i < WARMUP; i++) {
+			layout(tree, d, resize ? i : 0);
+		}
+		long thread = Thread.currentThread().getId();
+		long before = threads.getThreadAllocatedBytes(thread);
+		for (int i = 0; i < PASSES; i++) {
+			layout(tree, d, resize ? i : 0);
+		}
+		return threads.getThreadAllocatedBytes(thread) - before;
+	}
+
+	private static void layout(TestTree tree, Dimension d, int i) {
+		tree.panel.setSize(d.width + i % 50, d.height + i % 7);
+		tree.layout.layoutContainer(tree.panel);
+	}
+}
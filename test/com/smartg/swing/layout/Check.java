@@ -0,0 +1,22 @@
+package com.smartg.swing.layout;
+
+/**
+ * Assertions of main based checks. Checks don't depend on "-ea" switch.
+ */
+final class Check {
+
+	private Check() {
+	}
+
+	static void that(boolean condition, String message) {
+		if (!condition) {
+			throw new AssertionError(message);
+		}
+	}
+
+	static void equal(long expected, long actual, String message) {
+		if (expected != actual) {
+			throw new AssertionError(message + ": expected " + expected + ", but was " + actual);
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package com.smartg.swing.layout;
+
+import java.awt.Component;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.JLabel;
+
+import com.smartg.swing.layout.LayoutNode.LeafNode;
+
+/**
+ * Checks of ComponentIndex: components are compared by identity, and index
+ * doesn't keep leaf nodes or their components alive.
+ */
+public class ComponentIndexCheck {
+
+	private static final int COUNT = 10000;
+	private static final int PAYLOAD = 4096;
+
+	/**
+	 * Component which equals to any other Same component.
+	 */
+	static class Same extends JLabel {
+		private static final long serialVersionUID = 1L;
+
+		final byte[] payload = new byte[PAYLOAD];
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Same;
+		}
+
+		@Override
+		public int hashCode() {
+			return 1;
+		}
+	}
+
+	public static void main(String[] args) {
+		checkIdentity();
+		checkCleanup();
+		System.out.println("ComponentIndexCheck: ok");
+	}
+
+	private static void checkIdentity() {
+		ComponentIndex index = new ComponentIndex();
+		List<LeafNode> leafs = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			LeafNode leaf = new LeafNode(null, new Same());
+			leafs.add(leaf);
+			index.put(leaf);
+		}
+		Check.equal(leafs.size(), index.size(), "size of index");
+		for (LeafNode leaf : leafs) {
+			Check.that(index.get(leaf.getComponent()) == leaf, "leaf of equal, but not same component");
+		}
+		for (int i = 0; i < leafs.size(); i += 2) {
+			Check.that(index.remove(leafs.get(i).getComponent()) == leafs.get(i), "removed leaf");
+		}
+		for (int i = 0; i < leafs.size(); i++) {
+			LeafNode leaf = index.get(leafs.get(i).getComponent());
+			Check.that(leaf == (i % 2 == 0 ? null : leafs.get(i)), "leaf after remove");
+		}
+		Check.equal(leafs.size() / 2, index.size(), "size of index after remove");
+	}
+
+	/**
+	 * Leafs are dropped without removal from index, as if their node was
+	 * removed from tree by other means.
+	 */
+	private static void checkCleanup() {
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		ComponentIndex index = new ComponentIndex();
+		Component probe = new JLabel();
+		List<WeakReference<Component>> refs = new ArrayList<>();
+
+		long before = usedHeap(memory);
+		List<LeafNode> leafs = new ArrayList<>();
+		for (int i = 0; i < COUNT; i++) {
+			Same c = new Same();
+			refs.add(new WeakReference<Component>(c));
+			LeafNode leaf = new LeafNode(null, c);
+			leafs.add(leaf);
+			index.put(leaf);
+		}
+		long filled = usedHeap(memory);
+		Check.that(filled - before >= COUNT * PAYLOAD, "heap used by components");
+		leafs = null;
+
+		for (int i = 0; i < 20 && index.size() > 0; i++) {
+			System.gc();
+			// any access of index removes entries of collected leafs
+			index.get(probe);
+		}
+		Check.equal(0, index.size(), "size of index after leafs were collected");
+		for (WeakReference<Component> ref : refs) {
+			Check.that(ref.get() == null, "component is not collected");
+		}
+		long retained = (usedHeap(memory) - before) / COUNT;
+		Check.that(retained < PAYLOAD / 4, "heap retained per dropped component: " + retained);
+	}
+
+	private static long usedHeap(MemoryMXBean memory) {
+		System.gc();
+		return memory.getHeapMemoryUsage().getUsed();
+	}
+}
@@ -0,0 +1,138 @@
+package com.smartg.swing.layout;
+
+import java.awt.Component;
+import java.awt.Dimension;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.swing.JPanel;
+import javax.swing.border.EmptyBorder;
+
+import com.smartg.swing.layout.LayoutNode.HorizontalNode;
+import com.smartg.swing.layout.LayoutNode.VerticalNode;
+import com.smartg.swing.layout.TestTree.Box;
+
+/**
+ * Checks of measure and arrange passes: layout results (of tree and of
+ * compiled plan) are the same as results of layout before the passes were
+ * split, and each component is measured once, independent of depth of tree.
+ */
+public class MeasureCheck {
+
+	// TestTree(seed, 4).layoutHash() for seeds 0..39, recorded by layout
+	// which measured nodes again on each level of tree
+	private static final long[] OLD_LAYOUT = { -3308048881794697166L, -3314263101902198651L, 6324034095744835196L,
+			480810481069490863L, 484821410082L, 447305245925319202L, 1588935271233557423L, 524674067480L,
+			-5495432909845497939L, 415721757758822916L, -6349612678322062553L, -5705957765772333704L,
+			-4467214507764643565L, 485041854444L, 516279936170719534L, -7917350280965166064L, 485247359732L,
+			8402623278970754954L, 485284073264L, -9131215482228235226L, 447243437018812817L, -3893433925628356062L,
+			6353561625384209767L, 496517658815265780L, 6309858621477174343L, 1995154662820879296L,
+			4160352265808968066L, 2275516216557731361L, 7411136770187115907L, 446366905633873028L,
+			497104360975922545L, -3505903035647242524L, 7791616596592508797L, 2065046133305461427L,
+			6631556698947102258L, 508048365409L, 485122016064L, 447331656742831694L, -2979736706251079611L,
+			-5198237658532282958L };
+
+	public static void main(String[] args) {
+		checkOldLayout(false);
+		checkOldLayout(true);
+		checkCompiledChanges();
+		checkMeasureCount(4);
+		checkMeasureCount(40);
+		System.out.println("MeasureCheck: ok");
+	}
+
+	private static void checkOldLayout(boolean compiled) {
+		for (int seed = 0; seed < OLD_LAYOUT.length; seed++) {
+			TestTree tree = new TestTree(seed, 4);
+			tree.layout.setCompiled(compiled);
+			Check.equal(OLD_LAYOUT[seed], tree.layoutHash(), "bounds of tree " + seed + (compiled ? ", compiled" : ""));
+		}
+	}
+
+	/**
+	 * Same changes of sizes, visibility and properties of nodes are made to
+	 * tree laid out directly and to compiled one.
+	 */
+	private static void checkCompiledChanges() {
+		for (int seed = 0; seed < OLD_LAYOUT.length; seed++) {
+			TestTree tree = new TestTree(seed, 4);
+			TestTree compiled = new TestTree(seed, 4);
+			compiled.layout.setCompiled(true);
+			Random random = new Random(seed);
+			for (int step = 0; step < 5; step++) {
+				long seedOfStep = random.nextLong();
+				change(tree, new Random(seedOfStep));
+				change(compiled, new Random(seedOfStep));
+				Check.equal(tree.layoutHash(), compiled.layoutHash(), "bounds of tree " + seed + " after change " + step);
+			}
+		}
+	}
+
+	private static void change(TestTree tree, Random random) {
+		for (Component c : tree.components) {
+			switch (random.nextInt(8)) {
+			case 0:
+				c.setPreferredSize(new Dimension(5 + random.nextInt(60), 5 + random.nextInt(20)));
+				break;
+			case 1:
+				c.setVisible(!c.isVisible());
+				break;
+			default:
+				break;
+			}
+		}
+		LayoutNode root = tree.layout.getRoot();
+		root.setHgap(random.nextInt(6));
+		if (random.nextBoolean()) {
+			root.setBorder(new EmptyBorder(random.nextInt(5), random.nextInt(5), random.nextInt(5), random.nextInt(5)));
+		}
+		if (random.nextBoolean() && !tree.components.isEmpty()) {
+			Component c = tree.components.remove(random.nextInt(tree.components.size()));
+			tree.panel.remove(c);
+		}
+	}
+
+	/**
+	 * Chain of nested nodes with three components on each level.
+	 */
+	private static void checkMeasureCount(int depth) {
+		JPanel panel = new JPanel();
+		VerticalNode root = new VerticalNode("root");
+		JNodeLayout layout = new JNodeLayout(panel, root);
+		panel.setLayout(layout);
+		List<Box> boxes = new ArrayList<>();
+		String parent = "root";
+		for (int i = 0; i < depth; i++) {
+			LayoutNode node = i % 2 == 0 ? new HorizontalNode("n" + i) : new VerticalNode("n" + i);
+			layout.addLayoutNode(node, parent, null);
+			for (int j = 0; j < 3; j++) {
+				Box box = new Box(20 + j, 10 + i);
+				boxes.add(box);
+				panel.add(box, new NodeConstraints(node.getName()));
+			}
+			parent = node.getName();
+		}
+		panel.addNotify();
+
+		panel.setSize(800, 3000);
+		panel.validate();
+		checkCalls(boxes, 1, "first layout, depth " + depth);
+
+		panel.setSize(700, 2900);
+		panel.validate();
+		checkCalls(boxes, 0, "layout at new size, depth " + depth);
+
+		root.invalidateTree();
+		panel.invalidate();
+		panel.validate();
+		checkCalls(boxes, 1, "layout of invalidated tree, depth " + depth);
+	}
+
+	private static void checkCalls(List<Box> boxes, int expected, String message) {
+		for (Box box : boxes) {
+			Check.equal(expected, box.preferredSizeCalls, "getPreferredSize calls in " + message);
+			box.preferredSizeCalls = 0;
+		}
+	}
+}
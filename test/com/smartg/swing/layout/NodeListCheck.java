@@ -0,0 +1,167 @@
+package com.smartg.swing.layout;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import com.smartg.swing.layout.LayoutNode.HorizontalNode;
+import com.smartg.swing.layout.LayoutNode.RectNode;
+import com.smartg.swing.layout.LayoutNode.VerticalNode;
+
+/**
+ * Checks of NodeList: add, remove and compaction keep insertion order and
+ * slots of nodes, node added to second parent is removed from first one.
+ * Also prints time of building and clearing of nodes with 100k children.
+ */
+public class NodeListCheck {
+
+	private static int moves;
+
+	public static void main(String[] args) {
+		checkAddRemove();
+		checkIteratorRemove();
+		checkReparent();
+		benchmark(100000);
+		System.out.println("NodeListCheck: ok");
+	}
+
+	private static void checkAddRemove() {
+		NodeList list = new NodeList(new VerticalNode("owner")) {
+			@Override
+			protected void moved(int from, int to) {
+				moves++;
+			}
+		};
+		List<LayoutNode> expected = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			LayoutNode node = new VerticalNode("n" + i);
+			Check.that(list.add(node), "add of new node");
+			expected.add(node);
+		}
+		Check.that(!list.add(expected.get(3)), "add of node which is already in list");
+		Check.equal(20, list.size(), "size");
+
+		for (int i = 1; i < 20; i += 2) {
+			Check.that(list.remove(expected.get(i)), "remove of node in list");
+			Check.that(!list.contains(expected.get(i)), "contains removed node");
+			Check.that(!list.remove(expected.get(i)), "remove of removed node");
+		}
+		for (Iterator<LayoutNode> it = expected.iterator(); it.hasNext();) {
+			if (!list.contains(it.next())) {
+				it.remove();
+			}
+		}
+		Check.equal(10, list.size(), "size after remove");
+		checkOrder(list, expected, "order with holes");
+
+		// fill array, so next add must close holes or grow
+		for (int i = 20; i < 40; i++) {
+			LayoutNode node = new VerticalNode("n" + i);
+			list.add(node);
+			expected.add(node);
+		}
+		checkOrder(list, expected, "order after growth");
+
+		list.remove(expected.remove(0));
+		list.remove(expected.remove(5));
+		moves = 0;
+		for (int i = 0; i < expected.size(); i++) {
+			Check.that(list.get(i) == expected.get(i), "node at index " + i);
+			Check.equal(i, expected.get(i).slot, "slot after compaction");
+		}
+		Check.that(moves > 0, "moved is called by compaction");
+
+		for (LayoutNode node : expected) {
+			list.remove(node);
+		}
+		Check.equal(0, list.size(), "size after remove of all nodes");
+		Check.that(!list.iterator().hasNext(), "iterator of empty list");
+		Check.that(list.add(expected.get(0)), "add after clear");
+		Check.that(list.get(0) == expected.get(0), "node after clear");
+	}
+
+	private static void checkIteratorRemove() {
+		VerticalNode owner = new VerticalNode("owner");
+		List<LayoutNode> expected = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			LayoutNode node = new HorizontalNode("n" + i);
+			owner.add(node, null);
+			if (i % 3 != 0) {
+				expected.add(node);
+			}
+		}
+		int i = 0;
+		for (Iterator<LayoutNode> it = owner.iterator(); it.hasNext(); i++) {
+			LayoutNode node = it.next();
+			if (i % 3 == 0) {
+				it.remove();
+				Check.that(node.getParent() == null, "parent of node removed by iterator");
+			}
+		}
+		Check.equal(expected.size(), owner.getCount(), "count after iterator remove");
+		checkOrder(owner, expected, "order after iterator remove");
+	}
+
+	private static void checkOrder(Iterable<LayoutNode> nodes, List<LayoutNode> expected, String message) {
+		List<LayoutNode> actual = new ArrayList<>();
+		for (LayoutNode node : nodes) {
+			actual.add(node);
+		}
+		Check.that(actual.equals(expected), message);
+	}
+
+	private static void checkReparent() {
+		VerticalNode first = new VerticalNode("first");
+		HorizontalNode second = new HorizontalNode("second");
+		RectNode third = new RectNode("third");
+		LayoutNode node = new VerticalNode("node");
+		LayoutNode other = new VerticalNode("other");
+
+		first.add(node, null);
+		first.add(other, null);
+		second.add(node, null);
+		Check.that(node.getParent() == second, "parent after add to second node");
+		Check.equal(1, first.getCount(), "count of first parent");
+		Check.equal(1, second.getCount(), "count of second parent");
+
+		third.add(node, new Rectangle2D.Double(0, 0, 1, 1));
+		Check.equal(0, second.getCount(), "count of second parent");
+		Check.equal(1, third.getCount(), "count of third parent");
+
+		// slot of node belongs to new list only, old list must stay intact
+		first.add(node, null);
+		Check.equal(0, third.getCount(), "count of third parent");
+		first.remove(other);
+		Check.equal(1, first.getCount(), "count of first parent");
+		Iterator<LayoutNode> it = first.iterator();
+		Check.that(it.next() == node && !it.hasNext(), "children of first parent");
+		Check.that(node.getParent() == first && other.getParent() == null, "parents");
+	}
+
+	private static void benchmark(int n) {
+		LayoutNode[] nodes = new LayoutNode[n];
+		for (int i = 0; i < n; i++) {
+			nodes[i] = new HorizontalNode("n" + i);
+		}
+		VerticalNode column = new VerticalNode("column");
+		long t0 = System.nanoTime();
+		for (LayoutNode node : nodes) {
+			column.add(node, null);
+		}
+		long t1 = System.nanoTime();
+		// replace rows, as log viewer does
+		for (int i = 0; i < n; i++) {
+			column.remove(nodes[i]);
+			column.add(nodes[i], null);
+		}
+		long t2 = System.nanoTime();
+		for (LayoutNode node : nodes) {
+			column.remove(node);
+		}
+		long t3 = System.nanoTime();
+		Check.equal(0, column.getCount(), "count after clear");
+		System.out.println(n + " children: build " + (t1 - t0) / 1000000 + " ms, replace " + (t2 - t1) / 1000000
+				+ " ms, clear " + (t3 - t2) / 1000000 + " ms");
+	}
+}
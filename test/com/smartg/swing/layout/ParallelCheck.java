@@ -0,0 +1,135 @@
+package com.smartg.swing.layout;
+
+import java.awt.Component;
+import java.awt.Rectangle;
+import java.awt.geom.Rectangle2D;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+
+import com.smartg.swing.layout.LayoutNode.GridNode;
+import com.smartg.swing.layout.LayoutNode.RectNode;
+import com.smartg.swing.layout.LayoutNode.VerticalNode;
+import com.smartg.swing.layout.LayoutNode.VirtualVerticalNode;
+import com.smartg.swing.layout.TestTree.Box;
+
+/**
+ * Checks that parallel arrange gives same bounds as sequential one, and that
+ * virtual nodes are arranged by calling thread. Also prints time of
+ * sequential and parallel layout of large tree.
+ */
+public class ParallelCheck {
+
+	private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+	public static void main(String[] args) {
+		checkRandomTrees();
+		checkLargeTree(16, 1000);
+		checkVirtualNode();
+		System.out.println("ParallelCheck: ok");
+	}
+
+	private static void checkRandomTrees() {
+		for (int seed = 0; seed < 40; seed++) {
+			TestTree parallel = new TestTree(seed, 4);
+			parallel.layout.setParallel(POOL, 2);
+			Check.equal(new TestTree(seed, 4).layoutHash(), parallel.layoutHash(), "bounds of tree " + seed);
+		}
+	}
+
+	/**
+	 * RectNode with grids of boxes in its cells.
+	 */
+	private static void checkLargeTree(int grids, int boxes) {
+		long[] times = new long[2];
+		long[] hashes = new long[2];
+		for (int i = 0; i < 2; i++) {
+			JPanel panel = new JPanel();
+			RectNode root = new RectNode("root");
+			JNodeLayout layout = new JNodeLayout(panel, root);
+			panel.setLayout(layout);
+			if (i == 1) {
+				layout.setParallel(POOL, 1000);
+			}
+			int side = (int) Math.ceil(Math.sqrt(grids));
+			for (int g = 0; g < grids; g++) {
+				GridNode grid = new GridNode("g" + g);
+				layout.addLayoutNode(grid, "root",
+						new Rectangle2D.Double((g % side) / (double) side, (g / side) / (double) side, 1.0 / side,
+								1.0 / side));
+				for (int b = 0; b < boxes; b++) {
+					panel.add(new Box(10 + b % 7, 10 + b % 5), new NodeConstraints(grid.getName(),
+							new Rectangle(b % 40, b / 40, 1, 1)));
+				}
+			}
+			// each pass arranges whole tree, because size changes
+			long best = Long.MAX_VALUE;
+			for (int pass = 0; pass < 20; pass++) {
+				long t0 = System.nanoTime();
+				panel.setSize(4000 + pass * 40, 3000 + pass * 40);
+				panel.doLayout();
+				best = Math.min(best, System.nanoTime() - t0);
+			}
+			times[i] = best;
+			long h = 17;
+			for (Component c : panel.getComponents()) {
+				Rectangle r = c.getBounds();
+				h = (((h * 31 + r.x) * 31 + r.y) * 31 + r.width) * 31 + r.height;
+			}
+			hashes[i] = h;
+		}
+		Check.equal(hashes[0], hashes[1], "bounds of large tree");
+		System.out.println(grids * (boxes + 1) + " nodes: sequential " + times[0] / 1000 + " us, parallel "
+				+ times[1] / 1000 + " us");
+	}
+
+	private static void checkVirtualNode() {
+		final Set<Thread> threads = Collections.synchronizedSet(new HashSet<Thread>());
+		String[] results = new String[2];
+		for (int i = 0; i < 2; i++) {
+			JPanel panel = new JPanel();
+			RectNode root = new RectNode("root");
+			JNodeLayout layout = new JNodeLayout(panel, root);
+			panel.setLayout(layout);
+			if (i == 1) {
+				layout.setParallel(POOL, 2);
+			}
+			for (int q = 0; q < 4; q++) {
+				layout.addLayoutNode(new VerticalNode("q" + q), "root",
+						new Rectangle2D.Double((q % 2) * 0.5, (q / 2) * 0.5, 0.5, 0.5));
+			}
+			RowFactory factory = new RowFactory() {
+				@Override
+				public Component getRow(int row, Component recycled) {
+					threads.add(Thread.currentThread());
+					JLabel label = recycled != null ? (JLabel) recycled : new JLabel();
+					label.setText("row " + row);
+					return label;
+				}
+			};
+			layout.addLayoutNode(new VirtualVerticalNode("rows", factory, 1000, 16), "q3", null);
+			for (int q = 0; q < 3; q++) {
+				for (int b = 0; b < 50; b++) {
+					panel.add(new Box(20, 10 + b % 5), new NodeConstraints("q" + q));
+				}
+			}
+			panel.addNotify();
+			panel.setSize(800, 800);
+			panel.validate();
+			panel.setSize(700, 900);
+			panel.validate();
+			StringBuilder sb = new StringBuilder();
+			for (Component c : panel.getComponents()) {
+				sb.append(c.getBounds()).append('\n');
+			}
+			results[i] = sb.toString();
+		}
+		Check.that(results[0].equals(results[1]), "bounds of tree with virtual node");
+		Check.that(threads.equals(Collections.singleton(Thread.currentThread())),
+				"rows of virtual node are realized by other thread");
+	}
+}
@@ -0,0 +1,64 @@
+package com.smartg.swing.layout;
+
+import java.awt.Dimension;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Checks of resize coalescing: after a resize made of many small steps (with
+ * approximated or dropped passes) the exact pass, which is made when resize
+ * ends, gives same bounds as fresh layout at final size.
+ */
+public class ResizeCheck {
+
+	private static final int INTERVAL = 16;
+	private static final int STEPS = 40;
+
+	public static void main(String[] args) throws Exception {
+		for (int seed = 0; seed < 10; seed++) {
+			checkResize(seed, true);
+			checkResize(seed, false);
+		}
+		System.out.println("ResizeCheck: ok");
+		System.exit(0);
+	}
+
+	private static void checkResize(final int seed, final boolean approximate) throws Exception {
+		final TestTree[] tree = new TestTree[1];
+		final Dimension[] size = new Dimension[1];
+		SwingUtilities.invokeAndWait(new Runnable() {
+			@Override
+			public void run() {
+				tree[0] = new TestTree(seed, 4);
+				tree[0].layout.setResizeCoalescing(INTERVAL, approximate);
+				tree[0].panel.addNotify();
+				size[0] = tree[0].panel.getPreferredSize();
+				tree[0].panel.setSize(size[0]);
+				tree[0].panel.validate();
+			}
+		});
+		for (int i = 1; i <= STEPS; i++) {
+			final int step = i;
+			SwingUtilities.invokeAndWait(new Runnable() {
+				@Override
+				public void run() {
+					tree[0].panel.setSize(size[0].width + step * 3, size[0].height + step * 2);
+					tree[0].panel.validate();
+				}
+			});
+			Thread.sleep(2);
+		}
+		// resize ends when no resize was requested for one interval
+		Thread.sleep(INTERVAL * 10);
+		SwingUtilities.invokeAndWait(new Runnable() {
+			@Override
+			public void run() {
+				String name = "tree " + seed + (approximate ? ", approximate" : "");
+				Check.that(tree[0].layout.getCoalescedLayoutCount() > 0, "coalesced passes of " + name);
+				TestTree fresh = new TestTree(seed, 4);
+				fresh.layout(tree[0].panel.getWidth(), tree[0].panel.getHeight());
+				Check.equal(fresh.boundsHash(), tree[0].boundsHash(), "bounds after end of resize, " + name);
+			}
+		});
+	}
+}
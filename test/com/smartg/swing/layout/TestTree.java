@@ -0,0 +1,180 @@
+package com.smartg.swing.layout;
+
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.swing.JComponent;
+import javax.swing.JPanel;
+import javax.swing.border.EmptyBorder;
+
+import com.smartg.swing.layout.LayoutNode.GridNode;
+import com.smartg.swing.layout.LayoutNode.HorizontalNode;
+import com.smartg.swing.layout.LayoutNode.RectNode;
+import com.smartg.swing.layout.LayoutNode.VerticalNode;
+
+/**
+ * Random node tree with components of fixed preferred size. Same seed always
+ * builds same tree, so layout results can be compared between layout modes
+ * and with results recorded by previous versions.
+ */
+class TestTree {
+
+	private static final NodeAlignment[] H = { NodeAlignment.LEFT, NodeAlignment.RIGHT, NodeAlignment.CENTER,
+			NodeAlignment.STRETCHED };
+	private static final NodeAlignment[] V = { NodeAlignment.TOP, NodeAlignment.BOTTOM, NodeAlignment.CENTER,
+			NodeAlignment.STRETCHED };
+
+	final JPanel panel = new JPanel();
+	final JNodeLayout layout;
+	final List<Component> components = new ArrayList<>();
+
+	private final Random random;
+	private final int maxDepth;
+	private int id;
+
+	TestTree(long seed, int maxDepth) {
+		this.random = new Random(seed);
+		this.maxDepth = maxDepth;
+		LayoutNode root = newNode("root", (int) (seed % 4));
+		layout = new JNodeLayout(panel, root);
+		panel.setLayout(layout);
+		decorate(root);
+		build(root, 0);
+	}
+
+	/**
+	 * Component which counts calls of getPreferredSize.
+	 */
+	static class Box extends JComponent {
+		private static final long serialVersionUID = 1L;
+
+		int preferredSizeCalls;
+
+		Box(int width, int height) {
+			setPreferredSize(new Dimension(width, height));
+		}
+
+		@Override
+		public Dimension getPreferredSize() {
+			preferredSizeCalls++;
+			return super.getPreferredSize();
+		}
+	}
+
+	private LayoutNode newNode(String name, int kind) {
+		switch (kind) {
+		case 0:
+			return new VerticalNode(name);
+		case 1:
+			return new HorizontalNode(name);
+		case 2:
+			return new RectNode(name);
+		default:
+			GridNode grid = new GridNode(name);
+			if (random.nextBoolean()) {
+				grid.setMinCellWidth(random.nextInt(30));
+			}
+			if (random.nextBoolean()) {
+				grid.setMaxCellHeight(10 + random.nextInt(30));
+			}
+			return grid;
+		}
+	}
+
+	private void decorate(LayoutNode node) {
+		if (random.nextInt(3) == 0) {
+			node.setHorizontalAlignment(H[random.nextInt(4)]);
+		}
+		if (random.nextInt(3) == 0) {
+			node.setVerticalAlignment(V[random.nextInt(4)]);
+		}
+		if (random.nextInt(4) == 0) {
+			node.setBorder(new EmptyBorder(random.nextInt(5), random.nextInt(5), random.nextInt(5), random.nextInt(5)));
+		}
+		if (random.nextInt(5) == 0) {
+			node.setHgap(random.nextInt(6));
+		}
+		if (random.nextInt(5) == 0) {
+			node.setVgap(random.nextInt(6));
+		}
+	}
+
+	private Object constraints(LayoutNode parent) {
+		if (parent instanceof RectNode) {
+			double x = random.nextInt(4) / 4.0;
+			double y = random.nextInt(4) / 4.0;
+			return new Rectangle2D.Double(x, y, (1 - x) * (1 + random.nextInt(3)) / 3.0,
+					(1 - y) * (1 + random.nextInt(3)) / 3.0);
+		}
+		if (parent instanceof GridNode) {
+			return new Rectangle(random.nextInt(4), random.nextInt(4), 1 + random.nextInt(2), 1 + random.nextInt(2));
+		}
+		return null;
+	}
+
+	private void build(LayoutNode node, int depth) {
+		int n = 1 + random.nextInt(5);
+		for (int i = 0; i < n; i++) {
+			Object constraints = constraints(node);
+			if (depth < maxDepth && random.nextInt(3) == 0) {
+				LayoutNode child = newNode("n" + id++, random.nextInt(4));
+				decorate(child);
+				layout.addLayoutNode(child, node.getName(), constraints);
+				build(child, depth + 1);
+			} else {
+				Box box = new Box(5 + random.nextInt(60), 5 + random.nextInt(20));
+				if (random.nextInt(8) == 0) {
+					box.setVisible(false);
+				}
+				components.add(box);
+				panel.add(box, new NodeConstraints(node.getName(), constraints));
+			}
+		}
+	}
+
+	/**
+	 * Layout tree at given size.
+	 */
+	void layout(int width, int height) {
+		panel.setSize(width, height);
+		panel.invalidate();
+		panel.doLayout();
+	}
+
+	/**
+	 * @return hash of bounds of all components
+	 */
+	long boundsHash() {
+		long h = 17;
+		for (Component c : components) {
+			Rectangle r = c.getBounds();
+			h = h * 31 + r.x;
+			h = h * 31 + r.y;
+			h = h * 31 + r.width;
+			h = h * 31 + r.height;
+		}
+		return h;
+	}
+
+	/**
+	 * Layout tree at preferred size and at few sizes around of it.
+	 *
+	 * @return hash of all bounds
+	 */
+	long layoutHash() {
+		Dimension d = panel.getPreferredSize();
+		int[][] sizes = { { d.width, d.height }, { d.width + 53, d.height + 17 },
+				{ Math.max(1, d.width - 20), Math.max(1, d.height - 9) }, { d.width, d.height } };
+		long h = d.width * 31L + d.height;
+		for (int[] s : sizes) {
+			layout(s[0], s[1]);
+			h = h * 31 + boundsHash();
+		}
+		return h;
+	}
+}
@@ -0,0 +1,107 @@
+package com.smartg.swing.layout;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Checks of TrackIndex against plain array of sizes: prefix sums, track at
+ * offset (also at edges and out of range), grow and forget of measured
+ * tracks and change of track count.
+ */
+public class TrackIndexCheck {
+
+	public static void main(String[] args) {
+		checkEmpty();
+		checkGrow();
+		checkRandom();
+		System.out.println("TrackIndexCheck: ok");
+	}
+
+	private static void checkEmpty() {
+		TrackIndex index = new TrackIndex(0, 16);
+		Check.equal(0, index.getTotal(), "total of empty index");
+		Check.equal(-1, index.indexAt(0), "track at offset of empty index");
+		index.setCount(3);
+		Check.equal(48, index.getTotal(), "total of default sizes");
+		Check.equal(0, index.indexAt(-5), "track before first one");
+		Check.equal(0, index.indexAt(15), "track at end of first one");
+		Check.equal(1, index.indexAt(16), "track at start of second one");
+		Check.equal(2, index.indexAt(48), "track at total");
+		Check.equal(2, index.indexAt(1000), "track after last one");
+	}
+
+	private static void checkGrow() {
+		TrackIndex index = new TrackIndex(4, 16);
+		Check.that(index.grow(1, 10), "first measured cell replaces estimated size");
+		Check.equal(10, index.getSize(1), "size after first grow");
+		Check.that(!index.grow(1, 8), "smaller cell of measured track");
+		Check.that(!index.grow(1, 10), "same cell of measured track");
+		Check.that(index.grow(1, 12), "larger cell of measured track");
+		Check.equal(12, index.getSize(1), "size after larger cell");
+
+		index.forget(1);
+		Check.equal(12, index.getSize(1), "forgotten size is kept");
+		Check.that(index.grow(1, 5), "first cell after forget replaces size");
+		Check.equal(5, index.getSize(1), "size after forget");
+		Check.that(!index.grow(2, 16), "measured size equal to estimated");
+		Check.that(!index.grow(2, 10), "track is known after grow of same size");
+		Check.equal(16 + 5 + 16 + 16, index.getTotal(), "total after grow");
+	}
+
+	private static void checkRandom() {
+		Random random = new Random(1);
+		int count = 200;
+		int[] sizes = new int[count];
+		Arrays.fill(sizes, 16);
+		TrackIndex index = new TrackIndex(count, 16);
+		for (int step = 0; step < 2000; step++) {
+			int i = random.nextInt(count);
+			switch (random.nextInt(10)) {
+			case 0:
+				// shrink or enlarge, new tracks get default size
+				int n = 1 + random.nextInt(300);
+				sizes = Arrays.copyOf(sizes, n);
+				for (int j = count; j < n; j++) {
+					sizes[j] = 16;
+				}
+				count = n;
+				index.setCount(n);
+				break;
+			case 1:
+				index.forget(i);
+				break;
+			case 2:
+				int size = random.nextInt(40);
+				if (index.grow(i, size)) {
+					Check.that(sizes[i] != size, "grow reports change");
+					sizes[i] = size;
+				}
+				break;
+			default:
+				// zero size tracks included
+				sizes[i] = random.nextInt(4) == 0 ? 0 : random.nextInt(40);
+				index.setSize(i, sizes[i]);
+				break;
+			}
+			check(index, sizes, count);
+		}
+	}
+
+	private static void check(TrackIndex index, int[] sizes, int count) {
+		Check.equal(count, index.getCount(), "count");
+		int offset = 0;
+		for (int i = 0; i < count; i++) {
+			Check.equal(sizes[i], index.getSize(i), "size of track " + i);
+			Check.equal(offset, index.getOffset(i), "offset of track " + i);
+			if (sizes[i] > 0) {
+				Check.equal(i, index.indexAt(offset), "track at start of track " + i);
+				Check.equal(i, index.indexAt(offset + sizes[i] - 1), "track at end of track " + i);
+			}
+			offset += sizes[i];
+		}
+		Check.equal(offset, index.getTotal(), "total");
+		Check.equal(0, index.indexAt(-1), "track before first one");
+		Check.equal(count - 1, index.indexAt(offset), "track at total");
+		Check.equal(count - 1, index.indexAt(offset + 100), "track after last one");
+	}
+}
@@ -0,0 +1,108 @@
+package com.smartg.swing.layout;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Dimension;
+
+import javax.swing.JPanel;
+
+import com.smartg.swing.layout.LayoutNode.VerticalNode;
+import com.smartg.swing.layout.TestTree.Box;
+
+/**
+ * Checks of update transactions: nested transaction is committed by one
+ * layout pass, preferred size is measured once inside of transaction and
+ * unbalanced endUpdate throws.
+ */
+public class TransactionCheck {
+
+	/**
+	 * Layout which counts passes made outside of transactions.
+	 */
+	static class CountingLayout extends JNodeLayout {
+		int passes;
+
+		CountingLayout(Container target, LayoutNode root) {
+			super(target, root);
+		}
+
+		@Override
+		public void layoutContainer(Container parent) {
+			if (!isUpdating()) {
+				passes++;
+			}
+			super.layoutContainer(parent);
+		}
+	}
+
+	public static void main(String[] args) {
+		checkNested();
+		checkUnbalanced();
+		System.out.println("TransactionCheck: ok");
+	}
+
+	private static void checkNested() {
+		JPanel panel = new JPanel();
+		CountingLayout layout = new CountingLayout(panel, new VerticalNode("root"));
+		panel.setLayout(layout);
+		panel.addNotify();
+		panel.setSize(300, 400);
+		panel.validate();
+		layout.passes = 0;
+		long avoidedLayouts = layout.getAvoidedLayoutCount();
+		long avoidedMeasures = layout.getAvoidedMeasureCount();
+
+		layout.beginUpdate();
+		Dimension size = panel.getPreferredSize();
+		layout.beginUpdate();
+		for (int i = 0; i < 10; i++) {
+			panel.add(new Box(20 + i, 10), new NodeConstraints("root"));
+			// as RepaintManager would do after each add
+			panel.validate();
+		}
+		layout.endUpdate();
+		Check.that(layout.isUpdating(), "outer transaction is open after end of inner one");
+		Check.equal(0, layout.passes, "layout passes before commit");
+		panel.add(new Box(50, 10), new NodeConstraints("root"));
+		Check.that(size.equals(panel.getPreferredSize()), "preferred size is frozen inside of transaction");
+		Check.equal(avoidedMeasures + 1, layout.getAvoidedMeasureCount(), "avoided measures");
+		layout.endUpdate();
+
+		Check.that(!layout.isUpdating(), "transaction is committed");
+		Check.equal(1, layout.passes, "layout passes made by commit");
+		Check.equal(avoidedLayouts + 10, layout.getAvoidedLayoutCount(), "avoided layout passes");
+
+		// same bounds as layout made without transaction
+		JPanel expected = new JPanel();
+		expected.setLayout(new JNodeLayout(expected, new VerticalNode("root")));
+		for (Component c : panel.getComponents()) {
+			expected.add(new Box(c.getPreferredSize().width, c.getPreferredSize().height), new NodeConstraints("root"));
+		}
+		Check.that(expected.getPreferredSize().equals(panel.getPreferredSize()), "preferred size after commit");
+		expected.setSize(panel.getSize());
+		expected.doLayout();
+		for (int i = 0; i < panel.getComponentCount(); i++) {
+			Check.that(panel.getComponent(i).getBounds().equals(expected.getComponent(i).getBounds()),
+					"bounds of component " + i + " after commit");
+		}
+	}
+
+	private static void checkUnbalanced() {
+		JNodeLayout layout = new JNodeLayout(new JPanel(), new VerticalNode("root"));
+		try {
+			layout.endUpdate();
+			throw new AssertionError("endUpdate without beginUpdate");
+		} catch (IllegalStateException ex) {
+			// expected
+		}
+		layout.beginUpdate();
+		layout.endUpdate();
+		try {
+			layout.endUpdate();
+			throw new AssertionError("endUpdate after committed transaction");
+		} catch (IllegalStateException ex) {
+			// expected
+		}
+		Check.that(!layout.isUpdating(), "unbalanced endUpdate doesn't open transaction");
+	}
+}
@@ -0,0 +1,139 @@
+package com.smartg.swing.layout;
+
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.swing.JPanel;
+
+import com.smartg.swing.layout.LayoutNode.HorizontalNode;
+import com.smartg.swing.layout.LayoutNode.LeafNode;
+import com.smartg.swing.layout.LayoutNode.VerticalNode;
+import com.smartg.swing.layout.TestTree.Box;
+
+/**
+ * Checks number of nodes visited by layout pass: unchanged tree is skipped
+ * at root, after change of one component only path to its leaf and nodes
+ * which got new bounds are arranged. Bounds of nodes are private, so they are
+ * read by reflection.
+ */
+public class VisitCheck {
+
+	public static void main(String[] args) {
+		for (int seed = 0; seed < 40; seed++) {
+			checkTree(seed);
+		}
+		checkRows();
+		System.out.println("VisitCheck: ok");
+	}
+
+	private static void checkTree(int seed) {
+		TestTree tree = new TestTree(seed, 4);
+		LayoutContext context = tree.layout.getLayoutContext();
+		tree.panel.addNotify();
+		Dimension d = tree.panel.getPreferredSize();
+		tree.panel.setSize(d.width + 10, d.height + 10);
+		tree.panel.validate();
+
+		tree.panel.invalidate();
+		tree.panel.validate();
+		Check.equal(0, context.getVisitedNodes(), "visited nodes of unchanged tree " + seed);
+		Check.equal(1, context.getSkippedNodes(), "skipped nodes of unchanged tree " + seed);
+
+		Box box = null;
+		for (Component c : tree.components) {
+			if (c.isVisible()) {
+				box = (Box) c;
+			}
+		}
+		if (box == null) {
+			return;
+		}
+		Map<LayoutNode, Rectangle> before = new HashMap<>();
+		arranged(tree.layout.getRoot(), before);
+		Dimension size = box.getPreferredSize();
+		box.setPreferredSize(new Dimension(size.width + 7, size.height + 3));
+		tree.panel.invalidate();
+		tree.panel.validate();
+		Map<LayoutNode, Rectangle> after = new HashMap<>();
+		arranged(tree.layout.getRoot(), after);
+		int expected = 0;
+		for (LayoutNode node : after.keySet()) {
+			if (isPathOf(node, box) || !after.get(node).equals(before.get(node))) {
+				expected++;
+			}
+		}
+		Check.equal(expected, context.getVisitedNodes(), "visited nodes after change of one component, tree " + seed);
+	}
+
+	private static boolean isPathOf(LayoutNode node, Component c) {
+		if (node instanceof LeafNode) {
+			return ((LeafNode) node).getComponent() == c;
+		}
+		for (LayoutNode child : node) {
+			if (isPathOf(child, c)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Collect bounds given to each node of subtree by last arrange.
+	 */
+	private static void arranged(LayoutNode node, Map<LayoutNode, Rectangle> bounds) {
+		try {
+			int[] r = new int[4];
+			String[] names = { "arrangedX", "arrangedY", "arrangedWidth", "arrangedHeight" };
+			for (int i = 0; i < 4; i++) {
+				Field f = LayoutNode.class.getDeclaredField(names[i]);
+				f.setAccessible(true);
+				r[i] = f.getInt(node);
+			}
+			bounds.put(node, new Rectangle(r[0], r[1], r[2], r[3]));
+		} catch (ReflectiveOperationException ex) {
+			throw new AssertionError(ex);
+		}
+		for (LayoutNode child : node) {
+			arranged(child, bounds);
+		}
+	}
+
+	/**
+	 * Column of left aligned rows with ten components each. Width of one
+	 * component in the middle of one row is changed: root, that row and
+	 * components from changed one to end of row are arranged, all other rows
+	 * and components before changed one are skipped.
+	 */
+	private static void checkRows() {
+		JPanel panel = new JPanel();
+		VerticalNode root = new VerticalNode("root");
+		JNodeLayout layout = new JNodeLayout(panel, root);
+		panel.setLayout(layout);
+		Box[][] boxes = new Box[20][10];
+		for (int r = 0; r < boxes.length; r++) {
+			HorizontalNode row = new HorizontalNode("row" + r);
+			row.setHorizontalAlignment(NodeAlignment.LEFT);
+			layout.addLayoutNode(row, "root", null);
+			for (int i = 0; i < boxes[r].length; i++) {
+				// first row is the widest one
+				boxes[r][i] = new Box(r == 0 ? 40 : 20, 10);
+				panel.add(boxes[r][i], new NodeConstraints(row));
+			}
+		}
+		panel.addNotify();
+		panel.setSize(panel.getPreferredSize());
+		panel.validate();
+
+		boxes[7][4].setPreferredSize(new Dimension(25, 10));
+		panel.invalidate();
+		panel.validate();
+		LayoutContext context = layout.getLayoutContext();
+		Check.equal(1 + 1 + 6, context.getVisitedNodes(), "visited nodes after change of one component");
+		Check.equal(19 + 4, context.getSkippedNodes(), "skipped nodes after change of one component");
+		Check.equal(6, context.getChangedBounds(), "moved components");
+	}
+}